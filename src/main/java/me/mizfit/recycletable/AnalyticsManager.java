@@ -8,7 +8,6 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.*;
 
 /**
@@ -25,8 +24,12 @@ import java.util.*;
 public final class AnalyticsManager {
     private static boolean enabled = false;
 
-    private static final Map<Material, Long> usageCounts = new HashMap<>();
+    // One-element arrays, so counting a recycle doesn't box a new Long
+    private static final Map<Material, long[]> usageCounts = new HashMap<>();
     private static final Map<Material, DepthStats> depthStats = new HashMap<>();
+    // Running totals so the per-item signals don't rescan every material
+    private static long totalUsage = 0L;
+    private static double depthAvgSum = 0.0;
 
     private static File file;
     private static YamlConfiguration yaml;
@@ -49,7 +52,7 @@ public final class AnalyticsManager {
     public static void initialize(JavaPlugin plugin) {
         enabled = cfgBool("analytics.enabled", true);
         file = new File(plugin.getDataFolder(), "analytics.yml");
-        yaml = YamlConfiguration.loadConfiguration(file);
+        yaml = PersistenceService.loadYaml(file);
         load();
 
         // autosave
@@ -71,10 +74,15 @@ public final class AnalyticsManager {
     public static void recordProcessed(ItemStack item, int observedDepth) {
         if (!enabled || item == null) return;
         Material m = item.getType();
-        usageCounts.put(m, usageCounts.getOrDefault(m, 0L) + 1);
+        long[] count = usageCounts.get(m);
+        if (count == null) usageCounts.put(m, count = new long[1]);
+        count[0]++;
+        totalUsage++;
 
         DepthStats ds = depthStats.computeIfAbsent(m, k -> new DepthStats());
+        depthAvgSum -= ds.avg;
         ds.addSample(observedDepth);
+        depthAvgSum += ds.avg;
     }
 
     /**
@@ -83,10 +91,10 @@ public final class AnalyticsManager {
      */
     public static double usagePenalty(Material m, double weight) {
         if (!enabled) return 0.0;
-        long total = 0L;
-        for (Long v : usageCounts.values()) total += v;
+        long total = totalUsage;
         if (total <= 0) return 0.0;
-        long count = usageCounts.getOrDefault(m, 0L);
+        long[] c = usageCounts.get(m);
+        long count = c == null ? 0L : c[0];
 
         // Relative use share
         double share = count / (double) total; // 0..1
@@ -101,14 +109,9 @@ public final class AnalyticsManager {
      */
     public static double depthBonus(Material m, double weight, int maxDepth) {
         if (!enabled) return 0.0;
-        double global = 0.0;
-        int n = 0;
-        for (DepthStats ds : depthStats.values()) {
-            global += ds.avg;
-            n++;
-        }
+        int n = depthStats.size();
         if (n == 0) return 0.0;
-        global /= n;
+        double global = depthAvgSum / n;
 
         DepthStats ds = depthStats.get(m);
         if (ds == null || ds.samples == 0) return 0.0;
@@ -130,7 +133,7 @@ public final class AnalyticsManager {
                     try {
                         Material m = Material.valueOf(key);
                         long c = yaml.getLong("usage." + key, 0L);
-                        usageCounts.put(m, c);
+                        usageCounts.put(m, new long[] { c });
                     } catch (Exception ignored) {}
                 }
             }
@@ -150,16 +153,23 @@ public final class AnalyticsManager {
         } catch (Exception ex) {
             Bukkit.getLogger().warning("[AnalyticsManager] Failed to load analytics.yml: " + ex.getMessage());
         }
+        recomputeTotals();
+    }
+
+    private static void recomputeTotals() {
+        totalUsage = 0L;
+        for (long[] v : usageCounts.values()) totalUsage += v[0];
+        depthAvgSum = 0.0;
+        for (DepthStats ds : depthStats.values()) depthAvgSum += ds.avg;
     }
 
     private static void saveWithDecay() {
         double decay = cfgDouble("analytics.decay-rate", 0.05);
         if (decay > 0) {
             // Decay usage
-            for (Map.Entry<Material, Long> e : new ArrayList<>(usageCounts.entrySet())) {
-                long val = e.getValue();
-                long decayed = Math.max(0L, val - Math.max(1L, Math.round(val * decay)));
-                usageCounts.put(e.getKey(), decayed);
+            for (long[] c : usageCounts.values()) {
+                long val = c[0];
+                c[0] = Math.max(0L, val - Math.max(1L, Math.round(val * decay)));
             }
             // Decay samples (pull avg softly toward 0 with fewer samples)
             for (DepthStats ds : depthStats.values()) {
@@ -167,28 +177,32 @@ public final class AnalyticsManager {
                 ds.samples = Math.max(0, ds.samples - shrink);
                 // keep avg as-is; with fewer samples it will be corrected by new data
             }
+            recomputeTotals();
         }
 
         save();
     }
 
+    /** Copies the counters here; analytics.yml is built and written on the I/O thread. */
     private static void save() {
-        try {
-            yaml.set("usage", null);
-            yaml.set("depth", null);
+        final Map<Material, Long> usage = new HashMap<>();
+        for (Map.Entry<Material, long[]> e : usageCounts.entrySet()) usage.put(e.getKey(), e.getValue()[0]);
+        final Map<Material, double[]> depth = new HashMap<>();
+        for (Map.Entry<Material, DepthStats> e : depthStats.entrySet()) {
+            depth.put(e.getKey(), new double[] { e.getValue().avg, e.getValue().samples });
+        }
 
-            for (Map.Entry<Material, Long> e : usageCounts.entrySet()) {
-                yaml.set("usage." + e.getKey().name(), e.getValue());
+        PersistenceService.save(file, () -> {
+            YamlConfiguration out = new YamlConfiguration();
+            for (Map.Entry<Material, Long> e : usage.entrySet()) {
+                out.set("usage." + e.getKey().name(), e.getValue());
             }
-            for (Map.Entry<Material, DepthStats> e : depthStats.entrySet()) {
-                yaml.set("depth." + e.getKey().name() + ".avg", e.getValue().avg);
-                yaml.set("depth." + e.getKey().name() + ".samples", e.getValue().samples);
+            for (Map.Entry<Material, double[]> e : depth.entrySet()) {
+                out.set("depth." + e.getKey().name() + ".avg", e.getValue()[0]);
+                out.set("depth." + e.getKey().name() + ".samples", (int) e.getValue()[1]);
             }
-
-            yaml.save(file);
-        } catch (IOException ex) {
-            ex.printStackTrace();
-        }
+            return out;
+        });
     }
 
     public static void logRecycle(ItemStack item) {
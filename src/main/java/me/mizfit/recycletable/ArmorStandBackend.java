@@ -0,0 +1,76 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.EntityType;
+
+/**
+ * Hologram made of 3 stacked invisible ArmorStands — one per text line.
+ * Works on every server version; kept for servers without display entities.
+ */
+public class ArmorStandBackend implements HologramBackend {
+
+    // Y offsets above the block surface for each line
+    private static final double[] Y_OFFSETS = { 2.5, 2.25, 2.0 };
+
+    @Override
+    public String getName() { return "armor-stand"; }
+
+    @Override
+    public Hologram spawn(Location blockLoc) {
+        World world = blockLoc.getWorld();
+        double cx = blockLoc.getBlockX() + 0.5;
+        double by = blockLoc.getBlockY();
+        double cz = blockLoc.getBlockZ() + 0.5;
+
+        // Indexed 0 (top) → 2 (bottom)
+        ArmorStand[] stands = new ArmorStand[Y_OFFSETS.length];
+        for (int i = 0; i < Y_OFFSETS.length; i++) {
+            Location spawnLoc = new Location(world, cx, by + Y_OFFSETS[i], cz);
+            ArmorStand stand = (ArmorStand) world.spawnEntity(spawnLoc, EntityType.ARMOR_STAND);
+            stand.setVisible(false);
+            stand.setGravity(false);
+            stand.setCustomNameVisible(true);
+            stand.setCustomName(" ");
+            stand.setSmall(true);
+            stand.setInvulnerable(true);
+            stand.setCanPickupItems(false);
+            // setMarker (no hitbox) was added in 1.9 — safe to ignore on older versions
+            try { stand.setMarker(true); } catch (NoSuchMethodError ignored) {}
+            // Prevent the entity from being saved to the world file (1.14+)
+            try { stand.setPersistent(false); } catch (NoSuchMethodError ignored) {}
+            stands[i] = stand;
+        }
+        return new StandHologram(stands);
+    }
+
+    private static final class StandHologram implements Hologram {
+        private final ArmorStand[] stands;
+        // Last text sent to each stand — unchanged lines are not renamed again
+        private final String[] lines = new String[3];
+
+        StandHologram(ArmorStand[] stands) { this.stands = stands; }
+
+        @Override
+        public boolean render(String top, String middle, String bottom) {
+            // Non-short-circuit | so every line is updated
+            return setLine(0, top) | setLine(1, middle) | setLine(2, bottom);
+        }
+
+        @Override
+        public void remove() {
+            for (ArmorStand s : stands) {
+                if (s != null && !s.isDead()) s.remove();
+            }
+        }
+
+        private boolean setLine(int index, String text) {
+            if (text.equals(lines[index])) return false;
+            ArmorStand stand = stands[index];
+            if (stand != null && !stand.isDead()) stand.setCustomName(text);
+            lines[index] = text;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Ties tables to chunk lifecycle: a chunk loading prefetches its region's table
+ * shard (once per region, off the server thread) and, once that is in, reads its
+ * {@link TableMarkers}. A table's hologram exists only while its chunk is loaded.
+ * Output held back by {@link DeferredOutput} while the chunk was unloaded is
+ * placed when it loads. Tables are found through
+ * the registry's per-chunk index, so chunks without tables cost one map lookup.
+ */
+public class ChunkListener implements Listener {
+
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent e) {
+        Chunk chunk = e.getChunk();
+        // Shard still being read — TablePersistence calls chunkReady when it's in
+        if (TablePersistence.loadChunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ())) chunkReady(chunk);
+    }
+
+    /** Sets up a loaded chunk whose region's tables are registered. */
+    static void chunkReady(Chunk chunk) {
+        TableMarkers.load(chunk);
+        for (TableRecord table : TableRegistry.inChunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ())) {
+            // Output that finished while the chunk was unloaded
+            DeferredOutput.materialize(table);
+            HologramManager.spawnHologram(table);
+        }
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        Chunk chunk = e.getChunk();
+        // Non-persistent hologram entities vanish with the chunk — drop them first
+        // so nothing keeps a reference to a dead entity
+        for (TableRecord table : TableRegistry.inChunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ())) {
+            HologramManager.removeHologram(table);
+        }
+        TableMarkers.unload(chunk);
+    }
+
+    // MONITOR, so a cancelled unload (world stays loaded) keeps its index
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent e) {
+        // Chunks unloaded with their world don't always get a ChunkUnloadEvent
+        TableMarkers.unloadWorld(e.getWorld().getUID());
+    }
+}
@@ -4,7 +4,6 @@ import org.bukkit.Material;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.BlockDataMeta;
-import org.bukkit.inventory.meta.Damageable;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.lang.reflect.InvocationTargetException;
@@ -19,7 +18,12 @@ public class CompatibilityUtils {
     /**
      * Calculates how much of an item's durability remains as a fraction (0.0 - 1.0).
      * Returns 1.0 for items without durability.
+     *
+     * Runs on every completion, so damage is read through getDurability(): a
+     * server item stack answers it from its own damage value, where getItemMeta()
+     * would copy the whole meta (and hasItemMeta() does too, for tagged items).
      */
+    @SuppressWarnings("deprecation")
     public static double getDurabilityFactor(ItemStack item) {
         if (item == null) return 1.0;
 
@@ -28,19 +32,9 @@ public class CompatibilityUtils {
 
         // --- Normal items with durability ---
         if (maxDurability > 0) {
-            ItemMeta meta = item.getItemMeta();
-            if (meta instanceof Damageable) {
-                Damageable dmg = (Damageable) meta;
-                int damage = Math.max(0, dmg.getDamage());
-                int remaining = Math.max(0, maxDurability - damage);
-                return clamp((double) remaining / (double) maxDurability);
-            }
-
-            Integer legacyDamage = getLegacyDurability(item);
-            if (legacyDamage != null) {
-                int remaining = Math.max(0, maxDurability - legacyDamage);
-                return clamp((double) remaining / (double) maxDurability);
-            }
+            int damage = Math.max(0, item.getDurability());
+            int remaining = Math.max(0, maxDurability - damage);
+            return clamp((double) remaining / (double) maxDurability);
         }
 
         // --- Special handling for anvils (different "damage stages") ---
@@ -36,9 +36,98 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class ComplexityCalculator {
 
-    // Cache depth for speed
+    // Cache depth for speed (only used while building the table)
     private static final Map<Material, Integer> DEPTH_CACHE = new ConcurrentHashMap<>();
     private static final int DEFAULT_MAX_DEPTH = 6;
+    private static final int MAX_SCORE = 250;
+
+    /**
+     * Everything calculateComplexity needs that does not depend on the individual
+     * stack: per-Material base signals indexed by ordinal, plus the config scalars.
+     * Built once at startup and rebuilt on /recycletable reload; readers always see
+     * either the old or the new table, never a half-built one.
+     */
+    private static volatile Table table;
+
+    private static final class Table {
+        final double[] rarityPrior;
+        final double[] depthNorm;
+        final double[] baseSignal;   // rarityPrior * rarity-weight + depthNorm * difficulty-weight
+        final int[]    depth;
+        final long[]   secondsByScore;
+
+        final int    maxDepth;
+        final double usageWeight;
+        final double depthWeight;
+        final double rebalanceWeight;
+        final double smoothing;
+        final double enchantWeight;
+        final double aeMultiplier;
+
+        Table(int size) {
+            rarityPrior    = new double[size];
+            depthNorm      = new double[size];
+            baseSignal     = new double[size];
+            depth          = new int[size];
+            secondsByScore = new long[MAX_SCORE + 1];
+
+            maxDepth        = cfgInt("complexity.max-depth", DEFAULT_MAX_DEPTH);
+            usageWeight     = cfgDouble("analytics.usage-weight", 0.6);
+            depthWeight     = cfgDouble("analytics.depth-weight", 0.4);
+            rebalanceWeight = cfgDouble("analytics.rebalance-weight", 0.25);
+            smoothing       = cfgDouble("complexity.smoothing", 0.3);
+            enchantWeight   = cfgDouble("complexity.enchantment-weight", 0.2);
+            aeMultiplier    = cfgDouble("complexity.ae-enchantment-multiplier", 1.5);
+        }
+    }
+
+    /**
+     * Precomputes rarity priors, recipe depths and blended base signals for every
+     * Material. Must run after RecipeManager.initialize(); called again on reload.
+     */
+    public static void rebuild() {
+        DEPTH_CACHE.clear();
+        Material[] all = Material.values();
+        Table t = new Table(all.length);
+
+        double rarityWeight = cfgDouble("complexity.base-rarity-weight", 0.5);
+        double diffWeight   = cfgDouble("complexity.base-difficulty-weight", 0.5);
+
+        for (Material m : all) {
+            int i = m.ordinal();
+            int depth;
+            double prior;
+            try {
+                prior = baseRarityPrior(m);
+                depth = estimateRecipeDepth(m, new HashSet<>(), 0, t.maxDepth);
+            } catch (Throwable ignored) {
+                // Legacy/unsupported materials on odd server builds — treat as simple items
+                prior = 0.05;
+                depth = 0;
+            }
+            t.rarityPrior[i] = prior;
+            t.depth[i]       = depth;
+            t.depthNorm[i]   = t.maxDepth == 0 ? 0.0 : clamp01(depth / (double) t.maxDepth);
+            t.baseSignal[i]  = (prior * rarityWeight) + (t.depthNorm[i] * diffWeight);
+        }
+
+        int min = (int) cfgDouble("complexity.min-seconds", 15);
+        int max = (int) cfgDouble("complexity.max-seconds", 10800);
+        for (int score = 0; score <= MAX_SCORE; score++) {
+            t.secondsByScore[score] = scoreToSeconds(score, min, max);
+        }
+
+        table = t;
+    }
+
+    private static Table table() {
+        Table t = table;
+        if (t == null) {
+            rebuild();
+            t = table;
+        }
+        return t;
+    }
 
     private static double cfgDouble(String path, double def) {
         try {
@@ -139,11 +228,12 @@ public class ComplexityCalculator {
     }
 
     /**
-     * Recursively estimate crafting depth (0 for raw materials; increases with crafting layers).
-     * Capped by config complexity.max-depth to avoid deep recursion.
+     * Crafting depth (0 for raw materials; increases with crafting layers),
+     * capped by config complexity.max-depth. Read from the precomputed table.
      */
     public static int estimateRecipeDepth(Material root) {
-        return estimateRecipeDepth(root, new HashSet<>(), 0, cfgInt("complexity.max-depth", DEFAULT_MAX_DEPTH));
+        if (root == null) return 0;
+        return table().depth[root.ordinal()];
     }
 
     private static int estimateRecipeDepth(Material mat, Set<Material> seen, int currentDepth, int maxDepth) {
@@ -182,12 +272,11 @@ public class ComplexityCalculator {
      * which is then normalised by 5 (typical max useful enchantments on one item) and
      * scaled by the config weight so admins control how much enchantments can affect time.
      */
-    private static double computeEnchantBonus(ItemStack item) {
+    private static double computeEnchantBonus(ItemStack item, double weight) {
         if (item == null || !item.hasItemMeta()) return 0.0;
         ItemMeta meta = item.getItemMeta();
         if (!meta.hasEnchants()) return 0.0;
 
-        double weight = cfgDouble("complexity.enchantment-weight", 0.2);
         double sum = 0.0;
         for (Map.Entry<Enchantment, Integer> e : meta.getEnchants().entrySet()) {
             int max = e.getKey().getMaxLevel();
@@ -203,62 +292,51 @@ public class ComplexityCalculator {
     public static int calculateComplexity(ItemStack item) {
         if (item == null || item.getType() == null) return 1;
         final Material m = item.getType();
+        final Table t = table();
 
-        // Priors (0..1)
-        double rarityPrior = baseRarityPrior(m);
-
-        // Difficulty from recipe depth normalized 0..1 by max depth
-        int depth = estimateRecipeDepth(m);
-        double depthNorm = (cfgInt("complexity.max-depth", DEFAULT_MAX_DEPTH) == 0)
-                ? 0.0 : (depth / (double) cfgInt("complexity.max-depth", DEFAULT_MAX_DEPTH));
-        depthNorm = clamp01(depthNorm);
+        // Precomputed blend of rarity prior and normalised recipe depth
+        double baseSignal = t.baseSignal[m.ordinal()];
 
         // Analytics modifiers (0..1): convert to signed adjustments
         double usageAdj = 0.0;
         double depthAdj = 0.0;
         if (AnalyticsManager.isEnabled()) {
             // usage penalty (more usage -> a bit harder over time)
-            usageAdj = AnalyticsManager.usagePenalty(m, cfgDouble("analytics.usage-weight", 0.6));
+            usageAdj = AnalyticsManager.usagePenalty(m, t.usageWeight);
             // depth bonus (observed deeper items -> a bit harder)
-            depthAdj = AnalyticsManager.depthBonus(m, cfgDouble("analytics.depth-weight", 0.4), cfgInt("complexity.max-depth", DEFAULT_MAX_DEPTH));
+            depthAdj = AnalyticsManager.depthBonus(m, t.depthWeight, t.maxDepth);
         }
 
-        // Blend base signals
-        double baseRarityWeight = cfgDouble("complexity.base-rarity-weight", 0.5);
-        double baseDiffWeight   = cfgDouble("complexity.base-difficulty-weight", 0.5);
-        double baseSignal = (rarityPrior * baseRarityWeight) + (depthNorm * baseDiffWeight);
-
         // Apply analytics influence
-        double rebalanceWeight = cfgDouble("analytics.rebalance-weight", 0.25);
-        double adjusted = baseSignal + rebalanceWeight * (usageAdj + depthAdj);
+        double adjusted = baseSignal + t.rebalanceWeight * (usageAdj + depthAdj);
 
         // Smooth for stability
-        double smoothing = cfgDouble("complexity.smoothing", 0.3);
-        double smoothed = (1.0 - smoothing) * baseSignal + (smoothing) * adjusted;
+        double smoothed = (1.0 - t.smoothing) * baseSignal + (t.smoothing) * adjusted;
         smoothed = clamp01(smoothed);
 
         // Enchantment bonus: heavier enchantments push the signal (and therefore time) upward
-        double finalSignal = clamp01(smoothed + computeEnchantBonus(item));
+        double finalSignal = clamp01(smoothed + computeEnchantBonus(item, t.enchantWeight));
 
         // Map 0..1 to 1..250
         int score = (int) Math.round(1 + finalSignal * 249.0);
 
         // Flat multiplier if the item carries any AdvancedEnchantments enchants
         if (AEIntegration.isLoaded() && AEIntegration.hasAEEnchants(item)) {
-            double aeMultiplier = cfgDouble("complexity.ae-enchantment-multiplier", 1.5);
-            score = (int) Math.round(score * aeMultiplier);
+            score = (int) Math.round(score * t.aeMultiplier);
         }
 
         if (score < 1) score = 1;
-        if (score > 250) score = 250;
+        if (score > MAX_SCORE) score = MAX_SCORE;
         return score;
     }
 
     public static long mapScoreToSeconds(int score) {
-        int min = (int) cfgDouble("complexity.min-seconds", 15);
-        int max = (int) cfgDouble("complexity.max-seconds", 10800);
+        return table().secondsByScore[Math.max(0, Math.min(MAX_SCORE, score))];
+    }
+
+    private static long scoreToSeconds(int score, int min, int max) {
         if (score <= 1) return min;
-        if (score >= 250) return max;
+        if (score >= MAX_SCORE) return max;
         // Exponential curve: simple items stay quick, complex items scale up sharply.
         // e.g. score=63 (~25%) → ~1 min, score=125 (~50%) → ~7 min, score=188 (~75%) → ~35 min
         double t = (score - 1.0) / 249.0;
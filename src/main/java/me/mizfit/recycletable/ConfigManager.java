@@ -19,6 +19,56 @@ public class ConfigManager {
         return plugin.getConfig().getDouble("processing.speed-multiplier", 1.0);
     }
 
+    /** Maximum number of Recycling Tables one player may have placed at once. */
+    public static int getMaxTablesPerPlayer() {
+        return Math.max(1, plugin.getConfig().getInt("tables.max-per-player", 1));
+    }
+
+    /** Hologram renderer: "auto", "text-display" or "armor-stand". */
+    public static String getHologramBackend() {
+        return plugin.getConfig().getString("holograms.backend", "auto").toLowerCase(java.util.Locale.ROOT);
+    }
+
+    /** Holograms are only updated while a player is within this many blocks. */
+    public static int getHologramViewDistance() {
+        return plugin.getConfig().getInt("holograms.view-distance", 48);
+    }
+
+    /** Seconds between checks of which holograms have a player in range. */
+    public static int getHologramVisibilityCheckSeconds() {
+        return plugin.getConfig().getInt("holograms.visibility-check-seconds", 2);
+    }
+
+    /** Seconds between hologram redraws for items with a long time left. */
+    public static int getHologramSlowRefreshSeconds() {
+        return plugin.getConfig().getInt("holograms.slow-refresh-seconds", 10);
+    }
+
+    /** Items with more than this many minutes left use the slow hologram refresh. */
+    public static int getHologramSlowRefreshAboveMinutes() {
+        return plugin.getConfig().getInt("holograms.slow-refresh-above-minutes", 60);
+    }
+
+    /** Milliseconds per tick spent placing output from sessions that finished while the server was down. */
+    public static double getCatchUpBudgetMs() {
+        return plugin.getConfig().getDouble("processing.catch-up-budget-ms", 2.0);
+    }
+
+    /** Milliseconds per tick the hologram render pass may spend before carrying work over. */
+    public static double getHologramRenderBudgetMs() {
+        return plugin.getConfig().getDouble("holograms.render-budget-ms", 2.0);
+    }
+
+    /** Seconds between autosaves of tables whose contents changed. */
+    public static int getAutosaveIntervalSeconds() {
+        return plugin.getConfig().getInt("persistence.autosave-interval-seconds", 60);
+    }
+
+    /** Whether data files are written gzip-compressed. */
+    public static boolean isCompressedSaves() {
+        return plugin.getConfig().getBoolean("persistence.compress", false);
+    }
+
     public static long getSessionExpireMs() {
         return plugin.getConfig().getLong("processing.session-expire-ms", 1000L * 60 * 60 * 24);
     }
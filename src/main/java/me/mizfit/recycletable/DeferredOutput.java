@@ -0,0 +1,67 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Holds back output for tables whose chunk isn't loaded.
+ *
+ * While nobody can see a table, a finished item only adds its materials, books
+ * and consumed input to an {@link OutputDelta} on the table's record: no slot
+ * scans, no overflow journal writes. The delta is put into the inventory (with
+ * overflow spill) when the chunk loads, or when the GUI or a hopper touches the
+ * table. Session timing doesn't change — only where the output goes in between.
+ */
+public class DeferredOutput {
+
+    // Tables holding a delta, so shutdown can find them
+    private static final Set<TableRecord> deferred = new LinkedHashSet<>();
+
+    /** True if output for this table should be held back rather than placed now. */
+    static boolean shouldDefer(TableRecord table) {
+        return table != null && !table.isChunkLoaded();
+    }
+
+    /** The table's held-back output, created on first use. */
+    static OutputDelta deltaFor(TableRecord table) {
+        OutputDelta delta = table.getPendingOutput();
+        if (delta == null) {
+            delta = new OutputDelta();
+            table.setPendingOutput(delta);
+            deferred.add(table);
+        }
+        return delta;
+    }
+
+    /** Puts any held-back output into the table's inventory, spilling to overflow. */
+    public static void materialize(TableRecord table) {
+        OutputDelta delta = table.getPendingOutput();
+        if (delta == null) return;
+        table.setPendingOutput(null);
+        deferred.remove(table);
+
+        List<ItemStack> overflow = new ArrayList<>();
+        boolean full = delta.applyTo(table, overflow);
+        if (!overflow.isEmpty()) OverflowStorage.addItems(TablePersistence.legacyKey(table.getKey()), overflow);
+        TablePersistence.markDirty(table);
+
+        Player pl = table.getOwner() == null ? null : Bukkit.getPlayer(table.getOwner());
+        if (full && pl != null)
+            pl.sendMessage(ChatColor.YELLOW + "Output full — excess items saved to overflow storage.");
+    }
+
+    /** Materializes every held-back delta. Call from onDisable before tables are saved. */
+    public static void materializeAll() {
+        for (TableRecord table : new ArrayList<>(deferred)) materialize(table);
+    }
+
+    /** Tables currently holding back output. */
+    public static int getDeferredCount() { return deferred.size(); }
+}
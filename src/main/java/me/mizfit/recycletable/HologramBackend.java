@@ -0,0 +1,31 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Location;
+
+/**
+ * How a table's 3-line hologram is put into the world. HologramManager decides
+ * what the lines say; a backend only spawns, updates and removes the entities.
+ *
+ * Implementations: {@link TextDisplayBackend} (one entity per table, 1.19.4+) and
+ * {@link ArmorStandBackend} (three name-tagged stands, any version).
+ */
+public interface HologramBackend {
+
+    /** One spawned hologram. */
+    interface Hologram {
+        /**
+         * Shows the given three lines, top to bottom. Lines equal to the last render
+         * are not resent; returns false if nothing changed.
+         */
+        boolean render(String top, String middle, String bottom);
+
+        /** Removes the hologram's entities from the world. */
+        void remove();
+    }
+
+    /** Short name for logs and /recycletable stats. */
+    String getName();
+
+    /** Spawns an empty hologram above the given block location. */
+    Hologram spawn(Location blockLoc);
+}
@@ -1,22 +1,32 @@
 package me.mizfit.recycletable;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
-import org.bukkit.World;
-import org.bukkit.entity.ArmorStand;
-import org.bukkit.entity.EntityType;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Manages floating hologram displays above placed Recycling Table blocks.
  *
- * Each hologram is made of 3 stacked invisible ArmorStands — one per text line.
- * Holograms are keyed by the same "world:x:y:z" string used in TablePersistence.
+ * Each hologram shows 3 lines of text, drawn by the configured
+ * {@link HologramBackend} (a single TextDisplay, or 3 stacked ArmorStands on
+ * older servers). The spawned hologram and the display mode live on the
+ * table's {@link TableRecord}.
+ *
+ * Only holograms with a player nearby are kept up to date; a proximity check
+ * every few seconds decides which, and the rest keep their last text.
+ *
+ * Apart from a freshly spawned hologram, nothing draws directly: changes mark the
+ * table dirty, due redraws are queued once per second, and a per-tick pass draws
+ * the queue within a time budget, carrying any leftovers to the next tick.
  *
  * Three display modes are supported:
  *   CURRENT_ITEM — item name, progress bar, and time left for the active item
@@ -27,188 +37,304 @@ public class HologramManager {
 
     public enum HologramMode { CURRENT_ITEM, ALL_ITEMS, OFF }
 
-    // 3 ArmorStands per table, indexed 0 (top) → 2 (bottom)
-    private static final Map<String, List<ArmorStand>> holograms = new HashMap<>();
-    private static final Map<String, HologramMode>     modes     = new HashMap<>();
+    // Tables that currently have a hologram spawned, so they can all be removed on shutdown
+    private static final Set<TableRecord> live = new LinkedHashSet<>();
+    // Spawned tables with a player in range as of the last proximity check — only these are redrawn
+    private static Set<TableRecord> watched = new HashSet<>();
+    private static BukkitTask visibilityTask;
+    private static int viewDistance = 48;
+
+    // Holograms waiting for the render pass (each at most once — see TableRecord.renderQueued)
+    private static final ArrayDeque<TableRecord> dirty = new ArrayDeque<>();
+    private static final long RENDER_PASS_TICKS = 20L;
+    private static BukkitTask renderTask;
+    private static long renderBudgetNanos = 2_000_000L;
+    private static long renderTicks = 0L;
+    private static long renderedCount, unchangedCount, skippedCount, carriedOverTicks;
+
+    private static HologramBackend backend = new ArmorStandBackend();
+
+    // Pre-rendered text: the progress bar by whole percent, and item names by Material ordinal
+    private static final String[] PROGRESS_LINES = new String[101];
+    private static final String[] ITEM_NAME_LINES;
+    private static final String IDLE_TOP    = ChatColor.AQUA + "⚗ Recycling Table";
+    private static final String IDLE_MIDDLE = ChatColor.GRAY + "Idle";
+    private static final String QUEUE_TOP   = ChatColor.AQUA + "⚗ Recycling Queue";
+
+    static {
+        for (int pct = 0; pct <= 100; pct++) {
+            int filled = (pct + 5) / 10;
+            StringBuilder sb = new StringBuilder().append(ChatColor.YELLOW);
+            for (int i = 0; i < 10; i++) sb.append(i < filled ? "█" : "░");
+            PROGRESS_LINES[pct] = sb.append(' ').append(pct).append('%').toString();
+        }
+        org.bukkit.Material[] materials = org.bukkit.Material.values();
+        ITEM_NAME_LINES = new String[materials.length];
+        for (org.bukkit.Material m : materials) ITEM_NAME_LINES[m.ordinal()] = ChatColor.AQUA + formatName(m.name());
+    }
 
-    // Y offsets above the block surface for each line
-    private static final double[] Y_OFFSETS = { 2.5, 2.25, 2.0 };
+    // Redraw cadence: every second, or every slowRedrawTicks while an item has more than slowAfterTicks left
+    private static final long FAST_REDRAW_TICKS = 20L;
+    private static long slowRedrawTicks = 200L;
+    private static long slowAfterTicks  = 20L * 60 * 60;
 
     // ── Public API ────────────────────────────────────────────────────────────
 
     /**
-     * Spawns a 3-line hologram above the given block location.
-     * Removes any existing hologram at the same spot first.
+     * Picks the rendering backend from holograms.backend (auto, text-display or
+     * armor-stand). If it changed, every spawned hologram is respawned with it.
      */
-    public static void spawnHologram(Location blockLoc) {
-        String key = keyFor(blockLoc);
-        if (key == null) return;
-        removeHologram(key);
-
-        World world = blockLoc.getWorld();
-        if (world == null) return;
-
-        double cx = blockLoc.getBlockX() + 0.5;
-        double by = blockLoc.getBlockY();
-        double cz = blockLoc.getBlockZ() + 0.5;
-
-        List<ArmorStand> stands = new ArrayList<>();
-        for (double offset : Y_OFFSETS) {
-            Location spawnLoc = new Location(world, cx, by + offset, cz);
-            ArmorStand stand = (ArmorStand) world.spawnEntity(spawnLoc, EntityType.ARMOR_STAND);
-            stand.setVisible(false);
-            stand.setGravity(false);
-            stand.setCustomNameVisible(true);
-            stand.setCustomName(" ");
-            stand.setSmall(true);
-            stand.setInvulnerable(true);
-            stand.setCanPickupItems(false);
-            // setMarker (no hitbox) was added in 1.9 — safe to ignore on older versions
-            try { stand.setMarker(true); } catch (NoSuchMethodError ignored) {}
-            // Prevent the entity from being saved to the world file (1.14+)
-            try { stand.setPersistent(false); } catch (NoSuchMethodError ignored) {}
-            stands.add(stand);
+    public static void initialize() {
+        viewDistance = Math.max(1, ConfigManager.getHologramViewDistance());
+        long checkTicks = Math.max(1, ConfigManager.getHologramVisibilityCheckSeconds()) * 20L;
+        if (visibilityTask != null) visibilityTask.cancel();
+        visibilityTask = Bukkit.getScheduler().runTaskTimer(RecycleTable.getInstance(),
+                HologramManager::updateWatched, checkTicks, checkTicks);
+        renderBudgetNanos = (long) (Math.max(0.05, ConfigManager.getHologramRenderBudgetMs()) * 1_000_000L);
+        if (renderTask != null) renderTask.cancel();
+        renderTask = Bukkit.getScheduler().runTaskTimer(RecycleTable.getInstance(),
+                HologramManager::renderTick, 1L, 1L);
+
+        slowRedrawTicks = Math.max(1, ConfigManager.getHologramSlowRefreshSeconds()) * 20L;
+        slowAfterTicks  = Math.max(0, ConfigManager.getHologramSlowRefreshAboveMinutes()) * 60L * 20L;
+
+        String wanted = ConfigManager.getHologramBackend();
+        HologramBackend chosen;
+        if (wanted.equals("armor-stand")) {
+            chosen = new ArmorStandBackend();
+        } else if (TextDisplayBackend.isSupported()) {
+            chosen = new TextDisplayBackend();
+        } else {
+            if (wanted.equals("text-display"))
+                RecycleTable.getInstance().getLogger().warning("TextDisplay is not available on this server — using armor-stand holograms.");
+            chosen = new ArmorStandBackend();
         }
+        if (chosen.getName().equals(backend.getName())) return;
+        backend = chosen;
 
-        holograms.put(key, stands);
-        modes.putIfAbsent(key, HologramMode.CURRENT_ITEM);
-        renderIdle(key);
+        for (TableRecord table : new ArrayList<>(live)) spawnHologram(table);
     }
 
+    /** Name of the backend holograms are currently drawn with. */
+    public static String getBackendName() { return backend.getName(); }
+
     /**
-     * Called every second from RecycleSession's BukkitRunnable.
-     * Updates the hologram text based on the current mode.
+     * Spawns a 3-line hologram above the given table.
+     * Removes any existing hologram for it first.
      */
-    public static void refresh(String key, RecycleSession session) {
-        if (key == null || !holograms.containsKey(key)) return;
-
-        switch (modes.getOrDefault(key, HologramMode.CURRENT_ITEM)) {
-            case CURRENT_ITEM: renderCurrentItem(key, session); break;
-            case ALL_ITEMS:    renderAllItems(key, session);    break;
-            case OFF:          renderOff(key);                  break;
-        }
+    public static void spawnHologram(TableRecord table) {
+        Location blockLoc = table.getLocation();
+        if (blockLoc == null || blockLoc.getWorld() == null) return;
+        if (table.getHologram() != null) table.getHologram().remove();
+
+        table.setHologram(backend.spawn(blockLoc));
+        live.add(table);
+        // Drawn right away so a new entity never shows blank text
+        redraw(table);
     }
 
     /**
-     * Renders the idle state (no active session).
-     * Called when a session finishes or when the mode is cycled with no active session.
+     * Queues the table's hologram for the next render pass. Called by RecycleSession
+     * whenever an item starts or completes, and when the display mode changes.
+     * Tables with no player in range are left as they are until one comes close.
      */
-    public static void refreshIdle(String key) {
-        if (key == null || !holograms.containsKey(key)) return;
-        if (modes.getOrDefault(key, HologramMode.CURRENT_ITEM) == HologramMode.OFF) {
-            renderOff(key);
-        } else {
-            renderIdle(key);
-        }
+    public static void markDirty(TableRecord table) {
+        if (table == null || table.getHologram() == null || !table.isWatched() || table.isRenderQueued()) return;
+        table.setRenderQueued(true);
+        dirty.add(table);
     }
 
     /**
-     * Advances the hologram to the next mode and immediately refreshes the display.
-     * If a session is active it will update on the next tick; otherwise shows idle/off.
+     * Advances the hologram to the next mode. The caller marks the table dirty
+     * so the new mode is drawn on the next render pass.
      */
-    public static void cycleMode(String key) {
-        if (key == null) return;
-        HologramMode current = modes.getOrDefault(key, HologramMode.CURRENT_ITEM);
-        HologramMode next = HologramMode.values()[(current.ordinal() + 1) % HologramMode.values().length];
-        modes.put(key, next);
-    }
-
-    /** Returns the current display mode for the given table key. */
-    public static HologramMode getMode(String key) {
-        return modes.getOrDefault(key, HologramMode.CURRENT_ITEM);
+    public static void cycleMode(TableRecord table) {
+        if (table == null) return;
+        HologramMode current = table.getHologramMode();
+        table.setHologramMode(HologramMode.values()[(current.ordinal() + 1) % HologramMode.values().length]);
     }
 
-    /** Removes and destroys the hologram for the given table key. */
-    public static void removeHologram(String key) {
-        List<ArmorStand> stands = holograms.remove(key);
-        if (stands != null) killStands(stands);
-        modes.remove(key);
+    /** Removes and destroys the hologram for the given table (block broken or chunk unloaded). */
+    public static void removeHologram(TableRecord table) {
+        if (table.getHologram() != null) table.getHologram().remove();
+        table.setHologram(null);
+        table.setWatched(false);
+        live.remove(table);
+        watched.remove(table);
+        // Still queued entries are dropped by the render pass once it sees no hologram
     }
 
     /** Removes and destroys ALL active holograms. Called on server shutdown. */
     public static void removeAll() {
-        for (List<ArmorStand> stands : holograms.values()) killStands(stands);
-        holograms.clear();
-        modes.clear();
+        if (visibilityTask != null) visibilityTask.cancel();
+        if (renderTask != null) renderTask.cancel();
+        visibilityTask = null;
+        renderTask = null;
+        for (TableRecord table : live) {
+            if (table.getHologram() != null) table.getHologram().remove();
+            table.setHologram(null);
+            table.setWatched(false);
+        }
+        live.clear();
+        watched.clear();
+        for (TableRecord table : dirty) table.setRenderQueued(false);
+        dirty.clear();
     }
 
-    // ── Renderers ─────────────────────────────────────────────────────────────
+    // ── Render pass ───────────────────────────────────────────────────────────
 
-    private static void renderCurrentItem(String key, RecycleSession session) {
-        if (!session.isActive() || session.getCurrentItem() == null) {
-            renderIdle(key);
-            return;
+    /**
+     * Runs every tick. Once a second it queues every watched hologram whose redraw
+     * is due; each tick it renders queued holograms until holograms.render-budget-ms
+     * is used up, leaving the rest queued for the next tick. Always renders at least one.
+     */
+    private static void renderTick() {
+        if (++renderTicks % RENDER_PASS_TICKS == 0) queueDue();
+        if (dirty.isEmpty()) return;
+
+        long deadline = System.nanoTime() + renderBudgetNanos;
+        TableRecord table;
+        while ((table = dirty.poll()) != null) {
+            table.setRenderQueued(false);
+            if (table.getHologram() == null || !table.isWatched()) {
+                skippedCount++;
+                continue;
+            }
+            if (redraw(table)) renderedCount++;
+            else unchangedCount++;
+            if (System.nanoTime() >= deadline) break;
         }
-
-        String itemName = formatName(session.getCurrentItem().getType().name());
-        long   secsLeft = session.getTimeLeft() / 20L;
-        String bar      = buildProgressBar(session.getProgress());
-        String timeStr  = formatTime(secsLeft);
-
-        setLine(key, 0, ChatColor.AQUA   + itemName);
-        setLine(key, 1, ChatColor.YELLOW + bar);
-        setLine(key, 2, ChatColor.WHITE  + "⏳ " + ChatColor.GREEN + timeStr);
+        if (!dirty.isEmpty()) carriedOverTicks++;
     }
 
-    private static void renderAllItems(String key, RecycleSession session) {
-        if (!session.isActive()) {
-            renderIdle(key);
-            return;
+    private static void queueDue() {
+        long now = ProcessingScheduler.currentTick();
+        for (TableRecord table : watched) {
+            RecycleSession session = table.getSession();
+            if (session == null || !session.isActive() || table.getHologramMode() == HologramMode.OFF) continue;
+            if (now >= table.getNextRedrawTick()) markDirty(table);
         }
+    }
+
+    /** Holograms whose text changed and was sent to the entity. */
+    public static long getRenderedCount() { return renderedCount; }
+    /** Holograms rendered with the same text as before (no entity update). */
+    public static long getUnchangedCount() { return unchangedCount; }
+    /** Queued holograms dropped because they despawned or went out of range first. */
+    public static long getSkippedCount() { return skippedCount; }
+    /** Ticks that ran out of budget and carried work over to the next tick. */
+    public static long getCarriedOverTicks() { return carriedOverTicks; }
+    /** Holograms waiting to be rendered right now. */
+    public static int getBacklog() { return dirty.size(); }
 
-        // Start with time left on the current item
-        long totalSecs = session.getTimeLeft() / 20L;
-
-        // Add estimated time for every item still waiting in the queue
-        for (ItemStack queued : session.getQueuedItems()) {
-            if (queued == null || queued.getType() == org.bukkit.Material.AIR) continue;
-            int  complexity = Math.max(1, Math.min(250, ComplexityCalculator.calculateComplexity(queued)));
-            long itemSecs   = ComplexityCalculator.mapScoreToSeconds(complexity);
-            itemSecs = (long) Math.ceil(itemSecs / ConfigManager.getSpeedMultiplier());
-            itemSecs *= queued.getAmount();
-            totalSecs += itemSecs;
+    // ── Proximity ─────────────────────────────────────────────────────────────
+
+    /**
+     * Marks which spawned holograms have a player within holograms.view-distance.
+     * Each player only looks at the chunks their view radius overlaps, via the
+     * registry's per-world chunk grid. Tables that just came into range are queued
+     * for the next render so nobody sees stale text for long.
+     */
+    private static void updateWatched() {
+        double maxSq = (double) viewDistance * viewDistance;
+        int radius = (viewDistance + 15) >> 4;
+        Set<TableRecord> inRange = new HashSet<>(Math.max(16, watched.size() * 2));
+
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            Location loc = p.getLocation();
+            if (loc.getWorld() == null) continue;
+            UUID world = loc.getWorld().getUID();
+            int pcx = loc.getBlockX() >> 4;
+            int pcz = loc.getBlockZ() >> 4;
+            for (int cx = pcx - radius; cx <= pcx + radius; cx++) {
+                for (int cz = pcz - radius; cz <= pcz + radius; cz++) {
+                    for (TableRecord table : TableRegistry.inChunk(world, cx, cz)) {
+                        if (table.getHologram() == null) continue;
+                        TableKey key = table.getKey();
+                        double dx = key.getX() + 0.5 - loc.getX();
+                        double dy = key.getY() + 0.5 - loc.getY();
+                        double dz = key.getZ() + 0.5 - loc.getZ();
+                        if (dx * dx + dy * dy + dz * dz <= maxSq) inRange.add(table);
+                    }
+                }
+            }
         }
 
-        int total = 1 + session.getQueuedItems().size(); // current item + queued items
+        for (TableRecord table : watched) {
+            if (!inRange.contains(table)) table.setWatched(false);
+        }
+        watched = inRange;
+        for (TableRecord table : inRange) {
+            if (table.isWatched()) continue;
+            table.setWatched(true);
+            markDirty(table);
+        }
+    }
 
-        setLine(key, 0, ChatColor.AQUA  + "⚗ Recycling Queue");
-        setLine(key, 1, ChatColor.WHITE + "" + total + " item" + (total == 1 ? "" : "s") + " remaining");
-        setLine(key, 2, ChatColor.WHITE + "⏳ " + ChatColor.GREEN + formatTime(totalSecs) + " total");
+    /**
+     * Draws the table's current state from its session (idle if none) and schedules
+     * the next periodic redraw. Returns true if any line actually changed.
+     */
+    private static boolean redraw(TableRecord table) {
+        RecycleSession session = table.getSession();
+        boolean changed;
+        if (table.getHologramMode() == HologramMode.OFF) {
+            changed = renderOff(table);
+        } else if (session == null || !session.isActive() || session.getCurrentItem() == null) {
+            changed = renderIdle(table);
+        } else if (table.getHologramMode() == HologramMode.ALL_ITEMS) {
+            changed = renderAllItems(table, session);
+        } else {
+            changed = renderCurrentItem(table, session);
+        }
+        if (session != null) table.setNextRedrawTick(ProcessingScheduler.currentTick() + redrawIntervalTicks(session));
+        return changed;
     }
 
-    private static void renderIdle(String key) {
-        setLine(key, 0, ChatColor.AQUA + "⚗ Recycling Table");
-        setLine(key, 1, ChatColor.GRAY + "Idle");
-        setLine(key, 2, " ");
+    // ── Renderers ─────────────────────────────────────────────────────────────
+
+    private static boolean renderCurrentItem(TableRecord table, RecycleSession session) {
+        long secsLeft = session.getTimeLeft() / 20L;
+        int  pct      = (int) (Math.max(0, Math.min(1, session.getProgress())) * 100);
+
+        return render(table,
+                ITEM_NAME_LINES[session.getCurrentItem().getType().ordinal()],
+                PROGRESS_LINES[pct],
+                ChatColor.WHITE + "⏳ " + ChatColor.GREEN + formatTime(secsLeft));
     }
 
-    private static void renderOff(String key) {
-        setLine(key, 0, " ");
-        setLine(key, 1, " ");
-        setLine(key, 2, " ");
+    private static boolean renderAllItems(TableRecord table, RecycleSession session) {
+        // Time left on the current item plus the queue's running estimate
+        long totalSecs = session.getTimeLeft() / 20L + session.getQueuedSeconds();
+        int total = 1 + session.getQueuedCount(); // current item + queued items
+
+        return render(table,
+                QUEUE_TOP,
+                ChatColor.WHITE + "" + total + " item" + (total == 1 ? "" : "s") + " remaining",
+                ChatColor.WHITE + "⏳ " + ChatColor.GREEN + formatTime(totalSecs) + " total");
     }
 
-    // ── Helpers ───────────────────────────────────────────────────────────────
+    private static boolean renderIdle(TableRecord table) {
+        return render(table, IDLE_TOP, IDLE_MIDDLE, " ");
+    }
 
-    private static void setLine(String key, int index, String text) {
-        List<ArmorStand> stands = holograms.get(key);
-        if (stands == null || index < 0 || index >= stands.size()) return;
-        ArmorStand stand = stands.get(index);
-        if (stand != null && !stand.isDead()) stand.setCustomName(text);
+    private static boolean renderOff(TableRecord table) {
+        return render(table, " ", " ", " ");
     }
 
-    private static void killStands(List<ArmorStand> stands) {
-        if (stands == null) return;
-        for (ArmorStand s : stands) {
-            if (s != null && !s.isDead()) s.remove();
-        }
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    /**
+     * Ticks until this session's hologram needs drawing again. Long jobs only show
+     * hours and minutes, so they are redrawn less often than short ones.
+     */
+    private static long redrawIntervalTicks(RecycleSession session) {
+        return session.getTimeLeft() > slowAfterTicks ? slowRedrawTicks : FAST_REDRAW_TICKS;
     }
 
-    private static String buildProgressBar(double progress) {
-        int filled = (int) Math.round(Math.max(0, Math.min(1, progress)) * 10);
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < 10; i++) sb.append(i < filled ? "█" : "░");
-        return sb + " " + (int)(progress * 100) + "%";
+    private static boolean render(TableRecord table, String top, String middle, String bottom) {
+        HologramBackend.Hologram hologram = table.getHologram();
+        return hologram != null && hologram.render(top, middle, bottom);
     }
 
     private static String formatTime(long seconds) {
@@ -230,10 +356,4 @@ public class HologramManager {
         }
         return sb.toString();
     }
-
-    /** Generates the same "world:x:y:z" key format used by TablePersistence. */
-    public static String keyFor(Location loc) {
-        if (loc == null || loc.getWorld() == null) return null;
-        return loc.getWorld().getName() + ":" + loc.getBlockX() + ":" + loc.getBlockY() + ":" + loc.getBlockZ();
-    }
 }
@@ -14,12 +14,19 @@ import org.bukkit.inventory.ItemStack;
  * Output hoppers  → may only pull  from output slots (27–53, excluding control slots).
  * Overflow repopulation is triggered automatically after every successful output pull.
  * All protections are active regardless of whether a player has the GUI open.
+ * Transfers go through the table's {@link TableSlots}, so a hopper never forces
+ * the GUI contents into a server inventory.
  */
 public class HopperListener implements Listener {
 
-    /** Returns true if this inventory belongs to a registered recycling table. */
-    private static boolean isTableInv(Inventory inv) {
-        return inv != null && TablePersistence.getKeyForInventory(inv) != null;
+    /**
+     * Returns the registered recycling table this inventory belongs to, or null.
+     * Uses the registry's identity lookup rather than getHolder(): this runs for every
+     * hopper transfer on the server, and getHolder() on the hopper/chest side builds
+     * a block-state snapshot each call.
+     */
+    private static TableRecord tableOf(Inventory inv) {
+        return TableRegistry.get(inv);
     }
 
     @EventHandler
@@ -27,36 +34,43 @@ public class HopperListener implements Listener {
         Inventory source = e.getSource();
         Inventory dest   = e.getDestination();
 
-        boolean sourceIsTable = isTableInv(source);
-        boolean destIsTable   = isTableInv(dest);
+        TableRecord sourceTable = tableOf(source);
+        TableRecord destTable   = tableOf(dest);
 
-        if (!sourceIsTable && !destIsTable) return;
+        if (sourceTable == null && destTable == null) return;
+        long start = System.nanoTime();
+        if (destTable != null) DeferredOutput.materialize(destTable);
+        if (sourceTable != null) DeferredOutput.materialize(sourceTable);
 
-        // ── Hopper pushing INTO the table ────────────────────────────────────
-        if (destIsTable) {
+        if (destTable != null) {
+            // ── Hopper pushing INTO the table ────────────────────────────────
             // Always cancel — we replace Bukkit's slot-unaware transfer with our own
             e.setCancelled(true);
             if (ConfigManager.allowHopperInput()) {
-                pushToInputSlots(dest, source, e.getItem());
+                if (pushToInputSlots(destTable.getSlots(), source, e.getItem())) TablePersistence.markDirty(destTable);
             }
-            return;
-        }
-
-        // ── Hopper pulling FROM the table ────────────────────────────────────
-        if (sourceIsTable) {
+        } else {
+            // ── Hopper pulling FROM the table ────────────────────────────────
             e.setCancelled(true);
             if (ConfigManager.allowHopperOutput()) {
-                pullFromOutputSlots(source, dest);
+                int slot = pullFromOutputSlots(sourceTable.getSlots(), dest);
+                if (slot >= 0) {
+                    OutputPlacer.update(sourceTable, slot);
+                    TablePersistence.markDirty(sourceTable);
+                    // A slot just opened up — let overflow fill it
+                    OverflowStorage.tryRepopulate(sourceTable, null);
+                }
             }
         }
+        TableEventDispatcher.record(TableEventDispatcher.Route.HOPPER, System.nanoTime() - start);
     }
 
     /**
      * Pushes one item from sourceInv into the first available input slot
      * (0–26, excluding control slots) of tableInv.
-     * Merges with partial stacks before using an empty slot.
+     * Merges with partial stacks before using an empty slot. Returns true if an item moved.
      */
-    private void pushToInputSlots(Inventory tableInv, Inventory sourceInv, ItemStack template) {
+    private boolean pushToInputSlots(TableSlots tableInv, Inventory sourceInv, ItemStack template) {
         // Pass 1: merge into an existing partial stack
         for (int i = 0; i < 54; i++) {
             if (!TableListener.isInputSlot(i)) continue;
@@ -65,7 +79,7 @@ public class HopperListener implements Listener {
             slot.setAmount(slot.getAmount() + 1);
             tableInv.setItem(i, slot);
             removeOne(sourceInv, template);
-            return;
+            return true;
         }
 
         // Pass 2: place in the first empty slot
@@ -77,17 +91,19 @@ public class HopperListener implements Listener {
             place.setAmount(1);
             tableInv.setItem(i, place);
             removeOne(sourceInv, template);
-            return;
+            return true;
         }
         // All input slots full — item stays in the hopper (event already cancelled)
+        return false;
     }
 
     /**
      * Pulls one item from the first occupied output slot (27–53, excluding
      * control slots) of tableInv and moves it into destInv.
-     * Triggers overflow repopulation so freed output slots are refilled.
+     * Returns the slot the item came from, or -1 if nothing moved; the caller then
+     * triggers overflow repopulation so the freed output slot is refilled.
      */
-    private void pullFromOutputSlots(Inventory tableInv, Inventory destInv) {
+    private int pullFromOutputSlots(TableSlots tableInv, Inventory destInv) {
         for (int i = 0; i < 54; i++) {
             if (!TableListener.isOutputSlot(i)) continue;
             ItemStack slot = tableInv.getItem(i);
@@ -101,14 +117,10 @@ public class HopperListener implements Listener {
             // Successfully moved — update source slot
             slot.setAmount(slot.getAmount() - 1);
             tableInv.setItem(i, slot.getAmount() <= 0 ? null : slot);
-
-            // A slot just opened up — let overflow fill it
-            String tableKey = TablePersistence.getKeyForInventory(tableInv);
-            if (tableKey != null) OverflowStorage.tryRepopulate(tableKey, tableInv, null);
-
-            return;
+            return i;
         }
         // No moveable output items found — hopper stays idle this tick
+        return -1;
     }
 
     /**
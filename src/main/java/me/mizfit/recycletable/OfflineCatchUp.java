@@ -0,0 +1,129 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Delivers the output of queue entries that finished while the server was down.
+ *
+ * Restored sessions hand their finished entries over as one {@link OutputDelta} per
+ * table instead of processing them during startup. Deltas are put into the real
+ * table inventories a few at a time on a 1-tick task, stopping each tick once
+ * processing.catch-up-budget-ms is used up, so startup cost doesn't grow with
+ * downtime or table count. Anything that doesn't fit goes to overflow, as it
+ * would have at the time.
+ */
+public class OfflineCatchUp {
+
+    private static final class Pending {
+        final TableRecord table;   // null if the table isn't registered
+        final String tableKey;
+        final UUID owner;
+        final OutputDelta delta = new OutputDelta();
+        Pending(TableRecord table, String tableKey, UUID owner) {
+            this.table = table;
+            this.tableKey = tableKey;
+            this.owner = owner;
+        }
+    }
+
+    // Table key → its combined delta, in the order tables were submitted
+    private static final Map<String, Pending> pending = new LinkedHashMap<>();
+
+    private static BukkitTask applyTask;
+    private static long budgetNanos;
+    private static long appliedCount = 0L;
+
+    /**
+     * Queues a restored session's finished entries for its table. Called from
+     * RecycleSession.start while sessions are loaded.
+     */
+    static void submit(RecycleSession session, OutputDelta delta) {
+        String key = session.getTableKey();
+        if (key == null) return; // never attached to a table — nowhere to put the output
+        if (DeferredOutput.shouldDefer(session.getTable())) {
+            // Nobody can see it — wait for the chunk to load instead
+            DeferredOutput.deltaFor(session.getTable()).merge(delta);
+            return;
+        }
+        Pending p = pending.get(key);
+        if (p == null) {
+            p = new Pending(session.getTable(), key, session.getOwner());
+            pending.put(key, p);
+        }
+        p.delta.merge(delta);
+
+        if (applyTask == null) {
+            budgetNanos = (long) (Math.max(0.05, ConfigManager.getCatchUpBudgetMs()) * 1_000_000L);
+            applyTask = Bukkit.getScheduler().runTaskTimer(RecycleTable.getInstance(),
+                    OfflineCatchUp::applyTick, 1L, 1L);
+        }
+    }
+
+    /** Applies everything still waiting. Call from onDisable before tables and overflow are saved. */
+    public static void shutdown() {
+        if (applyTask != null) applyTask.cancel();
+        applyTask = null;
+        for (Pending p : pending.values()) apply(p);
+        pending.clear();
+    }
+
+    /** Tables whose offline output is still waiting to be placed. */
+    public static int getPendingCount() { return pending.size(); }
+    /** Tables that have had their offline output placed since startup. */
+    public static long getAppliedCount() { return appliedCount; }
+
+    private static void applyTick() {
+        long deadline = System.nanoTime() + budgetNanos;
+        Iterator<Pending> it = pending.values().iterator();
+        while (it.hasNext()) {
+            Pending p = it.next();
+            it.remove();
+            apply(p);
+            if (System.nanoTime() >= deadline) break;
+        }
+        if (pending.isEmpty()) {
+            applyTask.cancel();
+            applyTask = null;
+        }
+    }
+
+    private static void apply(Pending p) {
+        OutputDelta delta = p.delta;
+        List<ItemStack> overflow = new ArrayList<>();
+        // The table may have been broken since the session was restored
+        TableRecord table = p.table != null && TableRegistry.get(p.table.getKey()) == p.table ? p.table : null;
+        if (DeferredOutput.shouldDefer(table)) {
+            // Its chunk unloaded before our turn came
+            DeferredOutput.deltaFor(table).merge(delta);
+            appliedCount++;
+            return;
+        }
+        if (table != null) {
+            delta.applyTo(table, overflow);
+            TablePersistence.markDirty(table);
+        } else {
+            // Kept under the saved key, like any overflow whose table isn't registered
+            overflow.addAll(delta.toItems());
+        }
+        if (!overflow.isEmpty()) OverflowStorage.addItems(p.tableKey, overflow);
+        appliedCount++;
+
+        Player pl = Bukkit.getPlayer(p.owner);
+        if (pl != null) {
+            pl.sendMessage(ChatColor.GREEN + "Processed " + delta.size() + " stack(s) while the server was offline.");
+            if (!overflow.isEmpty())
+                pl.sendMessage(ChatColor.YELLOW + "Output full — excess items saved to overflow storage.");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Combined result of several finished queue entries that hasn't been put in the
+ * table yet: raw material counts, enchantment books, and the input stacks whose
+ * slots are to be cleared. Holds one count per material however many entries
+ * went into it — as parallel ordinal/count arrays, since a delta rarely holds
+ * more than a handful of materials. Part of a stack that is still processing
+ * only has its input slot reduced.
+ *
+ * Built by {@link OfflineCatchUp} for entries that finished during downtime and
+ * by {@link DeferredOutput} for tables whose chunk isn't loaded.
+ */
+public class OutputDelta {
+    private int[] ids = new int[4];
+    private int[] counts = new int[4];
+    private int materialCount = 0;
+    private List<ItemStack> books = null;
+    final List<ItemStack> consumed = new ArrayList<>();
+    // Finished items of a stack whose remainder is still queued
+    final List<ItemStack> parts = new ArrayList<>();
+    /** The session finished — clear every input slot, as RecycleSession.finish does. */
+    boolean clearInputs = false;
+
+    /** Folds one finished stack's outputs into this delta. */
+    void add(ItemStack item) {
+        RecycleSession.decomposeInto(item, this);
+        List<ItemStack> itemBooks = RecycleSession.enchantBooks(item);
+        if (!itemBooks.isEmpty()) books().addAll(itemBooks);
+        consumed.add(item);
+        AnalyticsManager.logRecycle(item);
+    }
+
+    /** Folds the finished items of a partly processed stack into this delta. */
+    void addPart(ItemStack part) {
+        RecycleSession.decomposeInto(part, this);
+        List<ItemStack> itemBooks = RecycleSession.enchantBooks(part);
+        if (!itemBooks.isEmpty()) books().addAll(itemBooks);
+        parts.add(part);
+        AnalyticsManager.logRecycle(part);
+    }
+
+    /** Adds {@code count} of the material with this ordinal. */
+    void addMaterial(int id, int count) {
+        for (int i = 0; i < materialCount; i++) {
+            if (ids[i] == id) {
+                counts[i] += count;
+                return;
+            }
+        }
+        if (materialCount == ids.length) {
+            ids = Arrays.copyOf(ids, materialCount * 2);
+            counts = Arrays.copyOf(counts, materialCount * 2);
+        }
+        ids[materialCount] = id;
+        counts[materialCount++] = count;
+    }
+
+    /** Moves everything from {@code other} into this delta. */
+    void merge(OutputDelta other) {
+        for (int i = 0; i < other.materialCount; i++) addMaterial(other.ids[i], other.counts[i]);
+        if (other.books != null) books().addAll(other.books);
+        consumed.addAll(other.consumed);
+        parts.addAll(other.parts);
+        clearInputs |= other.clearInputs;
+    }
+
+    private List<ItemStack> books() {
+        if (books == null) books = new ArrayList<>();
+        return books;
+    }
+
+    /**
+     * Clears the consumed input slots of the table and places the outputs there;
+     * whatever doesn't fit is added to {@code overflow}. Returns true if anything
+     * overflowed, raw materials or enchantment books.
+     */
+    boolean applyTo(TableRecord table, List<ItemStack> overflow) {
+        TableSlots inv = table.getSlots();
+        OutputPlacer placer = OutputPlacer.of(table);
+        for (ItemStack item : consumed) RecycleSession.clearInputSlot(inv, item);
+        for (ItemStack part : parts) RecycleSession.reduceInputSlot(inv, part);
+        if (clearInputs) {
+            for (int i = 0; i < 54; i++) {
+                if (TableListener.isInputSlot(i) && !TableListener.isControlSlot(i)) inv.setItem(i, null);
+            }
+        }
+        boolean full = false;
+        for (int i = 0; i < materialCount; i++) {
+            int left = placer.placeMaterial(RecycleSession.material(ids[i]), counts[i]);
+            if (left > 0) {
+                overflow.add(new ItemStack(RecycleSession.material(ids[i]), left));
+                full = true;
+            }
+        }
+        if (books != null) {
+            for (ItemStack book : books) {
+                if (placer.place(book) > 0) {
+                    overflow.add(book);
+                    full = true;
+                }
+            }
+        }
+        return full;
+    }
+
+    /** Every output as item stacks, for when there's no inventory to place them in. */
+    List<ItemStack> toItems() {
+        List<ItemStack> items = new ArrayList<>(materialCount + (books == null ? 0 : books.size()));
+        for (int i = 0; i < materialCount; i++) items.add(new ItemStack(RecycleSession.material(ids[i]), counts[i]));
+        if (books != null) items.addAll(books);
+        return items;
+    }
+
+    /** Number of finished stacks folded in. */
+    int size() { return consumed.size(); }
+
+    boolean isEmpty() { return consumed.isEmpty() && parts.isEmpty(); }
+}
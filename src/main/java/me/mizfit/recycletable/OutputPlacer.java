@@ -0,0 +1,204 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+
+/**
+ * Places output in a table's 24 output slots (columns 5–8) without rescanning them.
+ *
+ * Keeps a bitmask of empty output slots and, per material, a bitmask of slots
+ * holding a stack of it that isn't full. Session output, enchantment books and
+ * overflow repopulation all insert through here, so each output costs the slots
+ * it actually lands in rather than a pass over the grid.
+ *
+ * The index is built from the slots on first use and again after
+ * {@link #invalidate} (a player edited the GUI); single-slot changes such as a
+ * hopper pull go through {@link #update}. A slot that doesn't hold what the index
+ * expects forces a rebuild, and so does running out of indexed room — a slot
+ * emptied without either call would otherwise never be offered again. A stale
+ * index costs a rescan, never items.
+ */
+final class OutputPlacer {
+    private static final int[] SLOTS;                 // output slot numbers, ascending
+    private static final int[] BIT_OF = new int[54];  // slot number → bit, or -1
+
+    static {
+        Arrays.fill(BIT_OF, -1);
+        int[] slots = new int[54];
+        int n = 0;
+        for (int i = 0; i < 54; i++) {
+            if (!TableListener.isOutputSlot(i)) continue;
+            BIT_OF[i] = n;
+            slots[n++] = i;
+        }
+        SLOTS = Arrays.copyOf(slots, n);
+    }
+
+    private final TableSlots inv;
+    private boolean stale = true;
+    private int emptyMask;
+    // Material ordinal → mask of slots with a non-full stack of it; only materials with such a slot
+    private int[] partialIds = new int[4];
+    private int[] partialMasks = new int[4];
+    private int partialCount;
+
+    OutputPlacer(TableSlots inv) {
+        this.inv = inv;
+    }
+
+    /** The table's placer, created on first use. */
+    static OutputPlacer of(TableRecord table) {
+        OutputPlacer placer = table.getOutputPlacer();
+        if (placer == null) {
+            placer = new OutputPlacer(table.getSlots());
+            table.setOutputPlacer(placer);
+        }
+        return placer;
+    }
+
+    /** Call when a table's output slots may have been changed from outside (e.g. a GUI click). */
+    static void invalidate(TableRecord table) {
+        OutputPlacer placer = table.getOutputPlacer();
+        if (placer != null) placer.stale = true;
+    }
+
+    /** Call after one slot of a table was changed from outside (e.g. a hopper pull). */
+    static void update(TableRecord table, int slot) {
+        OutputPlacer placer = table.getOutputPlacer();
+        if (placer == null || placer.stale || BIT_OF[slot] < 0) return;
+        int bit = BIT_OF[slot];
+        placer.emptyMask &= ~(1 << bit);
+        for (int i = placer.partialCount - 1; i >= 0; i--) placer.clearPartial(i, bit);
+        placer.index(bit, placer.inv.getItem(slot));
+    }
+
+    /**
+     * Places {@code amount} of a raw material, topping up partial stacks of it
+     * before taking empty slots. Returns how many didn't fit.
+     */
+    int placeMaterial(Material type, int amount) {
+        return fill(type, null, amount);
+    }
+
+    /**
+     * Places a stack, merging into similar stacks before taking empty slots. The
+     * argument isn't modified. Returns how many of its items didn't fit.
+     */
+    int place(ItemStack stack) {
+        return fill(stack.getType(), stack, stack.getAmount());
+    }
+
+    /** Rebuilds the index from the slots. */
+    private void rebuild() {
+        emptyMask = 0;
+        partialCount = 0;
+        for (int bit = 0; bit < SLOTS.length; bit++) index(bit, inv.getItem(SLOTS[bit]));
+        stale = false;
+    }
+
+    private int fill(Material type, ItemStack template, int amount) {
+        boolean fresh = false;
+        while (true) {
+            if (stale) {
+                rebuild();
+                fresh = true;
+            }
+            amount = fillIndexed(type, template, amount);
+            if (stale) continue;    // met a slot the index had wrong — rescan and carry on
+            if (amount == 0 || fresh) return amount;
+            // Out of indexed room; rescan once in case a slot was emptied behind our back
+            stale = true;
+        }
+    }
+
+    // Raw materials (template == null) merge by type alone, as output always has;
+    // anything else must be similar to the stack it joins. Marks the index stale
+    // and returns what's left if a slot doesn't hold what the index expects.
+    private int fillIndexed(Material type, ItemStack template, int amount) {
+        int id = type.ordinal();
+
+        int mask = partialMask(id);
+        while (amount > 0 && mask != 0) {
+            int bit = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            int slotNo = SLOTS[bit];
+            ItemStack slot = inv.getItem(slotNo);
+            if (slot == null || slot.getType() != type) {
+                stale = true;
+                return amount;
+            }
+            if (template != null && !slot.isSimilar(template)) continue;
+            int canAdd = Math.min(amount, slot.getMaxStackSize() - slot.getAmount());
+            if (canAdd > 0) {
+                slot.setAmount(slot.getAmount() + canAdd);
+                inv.setItem(slotNo, slot);
+                amount -= canAdd;
+            }
+            if (slot.getAmount() >= slot.getMaxStackSize()) setPartial(id, bit, false);
+        }
+
+        int max = template != null ? template.getMaxStackSize() : type.getMaxStackSize();
+        while (amount > 0 && emptyMask != 0) {
+            int bit = Integer.numberOfTrailingZeros(emptyMask);
+            int slotNo = SLOTS[bit];
+            ItemStack current = inv.getItem(slotNo);
+            if (current != null && current.getType() != Material.AIR) {
+                stale = true;
+                return amount;
+            }
+            int place = Math.min(amount, max);
+            ItemStack stack;
+            if (template != null) {
+                stack = template.clone();
+                stack.setAmount(place);
+            } else {
+                stack = new ItemStack(type, place);
+            }
+            inv.setItem(slotNo, stack);
+            emptyMask &= ~(1 << bit);
+            if (place < max) setPartial(id, bit, true);
+            amount -= place;
+        }
+        return amount;
+    }
+
+    private void index(int bit, ItemStack item) {
+        if (item == null || item.getType() == Material.AIR) {
+            emptyMask |= 1 << bit;
+        } else if (item.getAmount() < item.getMaxStackSize()) {
+            setPartial(item.getType().ordinal(), bit, true);
+        }
+    }
+
+    private int partialMask(int id) {
+        for (int i = 0; i < partialCount; i++) if (partialIds[i] == id) return partialMasks[i];
+        return 0;
+    }
+
+    private void setPartial(int id, int bit, boolean partial) {
+        for (int i = 0; i < partialCount; i++) {
+            if (partialIds[i] != id) continue;
+            if (partial) partialMasks[i] |= 1 << bit;
+            else clearPartial(i, bit);
+            return;
+        }
+        if (!partial) return;
+        if (partialCount == partialIds.length) {
+            partialIds = Arrays.copyOf(partialIds, partialCount * 2);
+            partialMasks = Arrays.copyOf(partialMasks, partialCount * 2);
+        }
+        partialIds[partialCount] = id;
+        partialMasks[partialCount++] = 1 << bit;
+    }
+
+    // Clears a bit from entry i, dropping the entry (swap with the last) once it's empty
+    private void clearPartial(int i, int bit) {
+        partialMasks[i] &= ~(1 << bit);
+        if (partialMasks[i] != 0) return;
+        partialCount--;
+        partialIds[i] = partialIds[partialCount];
+        partialMasks[i] = partialMasks[partialCount];
+    }
+}
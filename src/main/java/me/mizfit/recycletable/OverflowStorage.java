@@ -2,29 +2,48 @@ package me.mizfit.recycletable;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.Material;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
- * Stores overflow items per table (keyed by "world:x:y:z") rather than per player.
+ * Stores overflow items per table rather than per player.
  * This ensures items are always returned to the correct table regardless of who
  * opened it or triggered the overflow.
+ *
+ * Persistence is write-behind: every change is appended to overflow.journal as an
+ * ADD / REMOVE / CLEAR record for one table's "world:x:y:z" key (fsynced on a background thread),
+ * and the journal is periodically folded into the overflow.yml snapshot. On
+ * startup the snapshot is loaded and any newer journal records are replayed.
+ *
+ * A placed table's items live on its {@link TableRecord}; items whose table is not
+ * registered (broken, or in a world that can't be identified) are kept in
+ * {@code detached} under their saved key so they are never dropped from the snapshot.
  */
 public class OverflowStorage {
-    private static final Map<String, List<ItemStack>> storage = new HashMap<>();
-    // Tracks which table keys already have a repopulate task queued (prevents stacking)
-    private static final Set<String> pendingRepopulate = new HashSet<>();
+    private static final Map<String, List<ItemStack>> detached = new HashMap<>();
+
+    private static final byte OP_ADD    = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR  = 3;
+
+    // Compact early if a burst of overflow grows the journal past this size
+    private static final long MAX_JOURNAL_BYTES = 4L * 1024 * 1024;
 
     private static File file;
     private static YamlConfiguration yaml;
+    private static RecordJournal journal;
+    private static BukkitTask compactTask;
     private static long repopulateDelayTicks;
     private static int maxOverflowItems;
 
@@ -36,7 +55,7 @@ public class OverflowStorage {
     public static void initialize(File dataFolder) {
         if (!dataFolder.exists()) dataFolder.mkdirs();
         file = new File(dataFolder, "overflow.yml");
-        yaml = YamlConfiguration.loadConfiguration(file);
+        yaml = PersistenceService.loadYaml(file);
 
         repopulateDelayTicks = (long) (RecycleTable.getInstance()
                 .getConfig().getDouble("overflow.repopulate-delay", 3.0) * 20L);
@@ -44,31 +63,87 @@ public class OverflowStorage {
                 .getConfig().getInt("overflow.max-items", 500);
 
         load();
+
+        // Replay anything journaled after the snapshot was taken (e.g. after a crash)
+        journal = new RecordJournal(new File(dataFolder, "overflow.journal"), "overflow");
+        List<RecordJournal.Entry> replayed = journal.replay(yaml.getLong("journal-seq", 0L));
+        for (RecordJournal.Entry entry : replayed) applyRecord(entry.payload);
+        if (!replayed.isEmpty()) {
+            Bukkit.getLogger().info("[RecycleTable] Replayed " + replayed.size() + " overflow journal record(s).");
+            save();
+        }
+
+        long compactTicks = Math.max(30, RecycleTable.getInstance()
+                .getConfig().getInt("overflow.compact-interval-seconds", 300)) * 20L;
+        if (compactTask != null) compactTask.cancel();
+        compactTask = Bukkit.getScheduler().runTaskTimer(RecycleTable.getInstance(), () -> {
+            if (journal.sizeBytes() > 0) save();
+        }, compactTicks, compactTicks);
+    }
+
+    /** Moves any overflow stored under this table's key onto its record. Called on registration. */
+    public static void attach(TableRecord table) {
+        List<ItemStack> items = detached.remove(TablePersistence.legacyKey(table.getKey()));
+        if (items != null) table.setOverflow(items);
+    }
+
+    /** Keeps a removed table's overflow under its key so it is still saved. */
+    public static void detach(TableRecord table) {
+        List<ItemStack> items = table.getOverflow();
+        table.setOverflow(null);
+        if (items != null && !items.isEmpty()) detached.put(TablePersistence.legacyKey(table.getKey()), items);
+    }
+
+    private static List<ItemStack> listFor(String tableKey) {
+        TableRecord table = TableRegistry.get(TablePersistence.parseKey(tableKey));
+        return table != null ? table.getOverflow() : detached.get(tableKey);
+    }
+
+    private static List<ItemStack> listForWrite(String tableKey) {
+        TableRecord table = TableRegistry.get(TablePersistence.parseKey(tableKey));
+        if (table == null) return detached.computeIfAbsent(tableKey, k -> new ArrayList<>());
+        if (table.getOverflow() == null) table.setOverflow(new ArrayList<>());
+        return table.getOverflow();
+    }
+
+    private static void dropList(String tableKey) {
+        TableRecord table = TableRegistry.get(TablePersistence.parseKey(tableKey));
+        if (table != null) table.setOverflow(null);
+        else detached.remove(tableKey);
+    }
+
+    /** Writes a final snapshot, truncates the journal and stops the writer thread. Blocks. */
+    public static void shutdown() {
+        if (compactTask != null) compactTask.cancel();
+        compactTask = null;
+        if (journal != null) journal.close(snapshotWriter());
+        journal = null;
     }
 
     /**
-     * Adds a single item to overflow storage and saves immediately.
+     * Adds a single item to overflow storage and journals it.
      * Prefer {@link #addItems(String, List)} when adding multiple items at once.
      */
     public static void addItem(String tableKey, ItemStack item) {
         if (tableKey == null || item == null || item.getAmount() <= 0) return;
-        List<ItemStack> list = storage.computeIfAbsent(tableKey, k -> new ArrayList<>());
+        List<ItemStack> list = listForWrite(tableKey);
         if (totalItemCount(list) >= maxOverflowItems) {
             Bukkit.getLogger().warning("[RecycleTable] Overflow cap (" + maxOverflowItems +
                     ") reached for " + tableKey + " — item could not be stored.");
             return;
         }
         mergeIntoList(list, item);
-        save();
+        journal(OP_ADD, tableKey, Collections.singletonList(item));
     }
 
     /**
-     * Adds a batch of items to overflow storage, saving only once at the end.
-     * Use this instead of calling addItem() in a loop to avoid repeated disk writes.
+     * Adds a batch of items to overflow storage, journaled as a single record.
+     * Use this instead of calling addItem() in a loop to avoid one record per item.
      */
     public static void addItems(String tableKey, List<ItemStack> items) {
         if (tableKey == null || items == null || items.isEmpty()) return;
-        List<ItemStack> list = storage.computeIfAbsent(tableKey, k -> new ArrayList<>());
+        List<ItemStack> list = listForWrite(tableKey);
+        List<ItemStack> accepted = new ArrayList<>(items.size());
         boolean capped = false;
         for (ItemStack item : items) {
             if (item == null || item.getAmount() <= 0) continue;
@@ -77,29 +152,37 @@ public class OverflowStorage {
                 break;
             }
             mergeIntoList(list, item);
+            accepted.add(item);
         }
         if (capped) {
             Bukkit.getLogger().warning("[RecycleTable] Overflow cap (" + maxOverflowItems +
                     ") reached for " + tableKey + " — some items could not be stored.");
         }
-        save();
+        // Journal only what was actually stored, so replay never needs the cap
+        if (!accepted.isEmpty()) journal(OP_ADD, tableKey, accepted);
     }
 
     /** Returns true if this table has any items waiting in overflow. */
-    public static boolean hasOverflow(String tableKey) {
-        List<ItemStack> items = storage.get(tableKey);
+    public static boolean hasOverflow(TableRecord table) {
+        List<ItemStack> items = table.getOverflow();
         return items != null && !items.isEmpty();
     }
 
     /** Returns the number of distinct stacks sitting in overflow for this table. */
-    public static int overflowStackCount(String tableKey) {
-        List<ItemStack> items = storage.get(tableKey);
+    public static int overflowStackCount(TableRecord table) {
+        List<ItemStack> items = table.getOverflow();
         return items == null ? 0 : items.size();
     }
 
     /** Returns the total number of individual items (sum of all stack amounts) in overflow for this table. */
-    public static int overflowItemTotal(String tableKey) {
-        return totalItemCount(storage.get(tableKey));
+    public static int overflowItemTotal(TableRecord table) {
+        return totalItemCount(table.getOverflow());
+    }
+
+    /** Same as above by key, so tables whose region isn't loaded are counted too. */
+    public static int overflowItemTotal(TableKey key) {
+        TableRecord table = TableRegistry.get(key);
+        return totalItemCount(table != null ? table.getOverflow() : detached.get(TablePersistence.legacyKey(key)));
     }
 
     /** Returns the total number of individual items (sum of all stack sizes) in a list. */
@@ -130,26 +213,112 @@ public class OverflowStorage {
         }
     }
 
+    /** Removes up to remove.getAmount() items similar to {@code remove}, emptying stacks front to back. */
+    private static void removeFromList(List<ItemStack> list, ItemStack remove) {
+        int left = remove.getAmount();
+        Iterator<ItemStack> it = list.iterator();
+        while (it.hasNext() && left > 0) {
+            ItemStack i = it.next();
+            if (!i.isSimilar(remove)) continue;
+            int take = Math.min(left, i.getAmount());
+            i.setAmount(i.getAmount() - take);
+            left -= take;
+            if (i.getAmount() <= 0) it.remove();
+        }
+    }
+
+    /**
+     * Queues a compaction: snapshots every table's overflow on this thread, then
+     * the journal thread writes overflow.yml (temp file + rename) and truncates the journal.
+     */
     public static void save() {
-        try {
-            // Wipe both sections so stale or legacy data doesn't linger
-            yaml.set("overflow", null);
-            yaml.set("overflow-keys", null); // remove legacy section from old format
+        if (journal == null) return;
+        journal.compact(snapshotWriter());
+    }
 
-            for (Map.Entry<String, List<ItemStack>> e : storage.entrySet()) {
+    private static RecordJournal.SnapshotWriter snapshotWriter() {
+        // Deep copy now, on the server thread — the writer serializes the copy later
+        final Map<String, List<ItemStack>> copy = new LinkedHashMap<>();
+        for (TableRecord table : TableRegistry.all()) {
+            if (table.getOverflow() != null) copy.put(TablePersistence.legacyKey(table.getKey()), deepCopy(table.getOverflow()));
+        }
+        for (Map.Entry<String, List<ItemStack>> e : detached.entrySet()) {
+            copy.put(e.getKey(), deepCopy(e.getValue()));
+        }
+        return lastSeq -> {
+            YamlConfiguration out = new YamlConfiguration();
+            for (Map.Entry<String, List<ItemStack>> e : copy.entrySet()) {
                 // Escape colons so YAML doesn't interpret "world:x:y:z" as nested keys
-                String safeKey = toSafeKey(e.getKey());
-                yaml.set("overflow." + safeKey, e.getValue());
+                out.set("overflow." + toSafeKey(e.getKey()), e.getValue());
             }
-            yaml.save(file);
-        } catch (IOException ex) {
-            Bukkit.getLogger().severe("[OverflowStorage] Failed to save overflow.yml");
-            ex.printStackTrace();
+            out.set("journal-seq", lastSeq);
+            PersistenceService.writeAtomically(file, out.saveToString());
+        };
+    }
+
+    private static List<ItemStack> deepCopy(List<ItemStack> items) {
+        List<ItemStack> copy = new ArrayList<>(items.size());
+        for (ItemStack i : items) copy.add(i.clone());
+        return copy;
+    }
+
+    // ── Journal records ───────────────────────────────────────────────────────
+
+    // Only the stacks are copied here; the YAML encoding runs on the journal's writer thread
+    private static void journal(byte op, String tableKey, List<ItemStack> items) {
+        if (journal == null) return;
+        final List<ItemStack> copy = op == OP_CLEAR ? null : deepCopy(items);
+        journal.append(() -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(op);
+            out.writeUTF(tableKey);
+            if (copy != null) {
+                YamlConfiguration body = new YamlConfiguration();
+                body.set("items", copy);
+                byte[] encoded = body.saveToString().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+            return bytes.toByteArray();
+        });
+        if (journal.sizeBytes() > MAX_JOURNAL_BYTES) save();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void applyRecord(byte[] payload) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            byte op = in.readByte();
+            String tableKey = in.readUTF();
+            if (op == OP_CLEAR) {
+                dropList(tableKey);
+                return;
+            }
+            byte[] encoded = new byte[in.readInt()];
+            in.readFully(encoded);
+            YamlConfiguration body = new YamlConfiguration();
+            body.loadFromString(new String(encoded, StandardCharsets.UTF_8));
+            List<ItemStack> items = (List<ItemStack>) body.getList("items");
+            if (items == null) return;
+
+            if (op == OP_ADD) {
+                List<ItemStack> list = listForWrite(tableKey);
+                for (ItemStack i : items) mergeIntoList(list, i);
+            } else if (op == OP_REMOVE) {
+                List<ItemStack> list = listFor(tableKey);
+                if (list == null) return;
+                for (ItemStack i : items) removeFromList(list, i);
+                if (list.isEmpty()) dropList(tableKey);
+            }
+        } catch (Exception ex) {
+            Bukkit.getLogger().warning("[OverflowStorage] Skipping unreadable journal record: " + ex.getMessage());
         }
     }
 
     public static void load() {
-        storage.clear();
+        detached.clear();
+        for (TableRecord table : TableRegistry.all()) table.setOverflow(null);
         if (!yaml.contains("overflow")) return;
         org.bukkit.configuration.ConfigurationSection section =
                 yaml.getConfigurationSection("overflow");
@@ -160,7 +329,10 @@ public class OverflowStorage {
                 // Restore the original "world:x:y:z" key by reversing the escape
                 String tableKey = fromSafeKey(safeKey);
                 List<ItemStack> list = (List<ItemStack>) yaml.get("overflow." + safeKey);
-                if (list != null) storage.put(tableKey, list);
+                if (list == null) continue;
+                TableRecord table = TableRegistry.get(TablePersistence.parseKey(tableKey));
+                if (table != null) table.setOverflow(list);
+                else detached.put(tableKey, list);
             } catch (Exception ex) {
                 Bukkit.getLogger().warning("[OverflowStorage] Failed to load overflow for: " + safeKey);
             }
@@ -173,67 +345,59 @@ public class OverflowStorage {
      * item-take clicks won't stack up duplicate tasks.
      * The player parameter is used only for feedback messages.
      */
-    public static void tryRepopulate(String tableKey, Inventory recyclerInv, Player player) {
-        if (tableKey == null || !storage.containsKey(tableKey)) return;
+    public static void tryRepopulate(TableRecord table, Player player) {
+        if (table == null || table.getOverflow() == null) return;
 
         // De-duplicate: if a task is already pending for this table, skip
-        if (pendingRepopulate.contains(tableKey)) return;
-        pendingRepopulate.add(tableKey);
+        if (table.isRepopulatePending()) return;
+        table.setRepopulatePending(true);
 
+        final String tableKey = TablePersistence.legacyKey(table.getKey());
         new BukkitRunnable() {
             @Override
             public void run() {
-                pendingRepopulate.remove(tableKey);
+                table.setRepopulatePending(false);
 
-                List<ItemStack> overflowItems = storage.get(tableKey);
+                List<ItemStack> overflowItems = table.getOverflow();
                 if (overflowItems == null || overflowItems.isEmpty()) return;
 
                 // Work on a snapshot so concurrent access can't cause ConcurrentModificationException.
                 // Clear the live list now; we'll add back anything that doesn't fit.
                 List<ItemStack> snapshot = new ArrayList<>(overflowItems);
                 overflowItems.clear();
+                List<ItemStack> returned = new ArrayList<>();
 
+                OutputPlacer placer = OutputPlacer.of(table);
                 Iterator<ItemStack> iterator = snapshot.iterator();
                 while (iterator.hasNext()) {
                     ItemStack next = iterator.next();
-                    boolean placed = false;
-
-                    for (int i = 27; i <= 53; i++) {
-                        if (!TableListener.isOutputSlot(i)) continue;
-                        ItemStack slot = recyclerInv.getItem(i);
-                        if (slot == null || slot.getType() == Material.AIR) {
-                            recyclerInv.setItem(i, next.clone());
-                            iterator.remove();
-                            placed = true;
-                            break;
-                        } else if (slot.isSimilar(next) && slot.getAmount() < slot.getMaxStackSize()) {
-                            int canAdd = Math.min(next.getAmount(), slot.getMaxStackSize() - slot.getAmount());
-                            slot.setAmount(slot.getAmount() + canAdd);
-                            next.setAmount(next.getAmount() - canAdd);
-                            if (next.getAmount() <= 0) {
-                                iterator.remove();
-                                placed = true;
-                                break;
-                            }
-                        }
+                    int left = placer.place(next);
+                    if (left < next.getAmount()) {
+                        ItemStack moved = next.clone();
+                        moved.setAmount(next.getAmount() - left);
+                        returned.add(moved);
                     }
-
-                    if (!placed) break; // output still full; stop trying
+                    if (left > 0) {
+                        next.setAmount(left);
+                        break; // output still full; stop trying
+                    }
+                    iterator.remove();
                 }
 
                 // Anything left in snapshot couldn't fit — put it back into the live list
                 overflowItems.addAll(snapshot);
+                if (!returned.isEmpty()) TablePersistence.markDirty(table);
 
                 if (overflowItems.isEmpty()) {
-                    storage.remove(tableKey);
+                    table.setOverflow(null);
+                    journal(OP_CLEAR, tableKey, null);
                     if (player != null && player.isOnline())
                         player.sendMessage(ChatColor.GREEN + "All overflow items have been returned!");
                 } else {
+                    if (!returned.isEmpty()) journal(OP_REMOVE, tableKey, returned);
                     if (player != null && player.isOnline())
                         player.sendMessage(ChatColor.YELLOW + "Repopulated available slots from overflow.");
                 }
-
-                save();
             }
         }.runTaskLater(RecycleTable.getInstance(), repopulateDelayTicks);
     }
@@ -0,0 +1,170 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the plugin's data files off the server thread.
+ *
+ * Callers take a cheap copy of their state on the server thread and hand over a
+ * {@link Snapshot} that turns it into YAML. Serializing, optional gzip
+ * (persistence.compress) and the temp-file-plus-rename write all run on one I/O
+ * thread — a virtual thread on Java 21+, otherwise a platform daemon thread.
+ * If a file is saved again before its previous save started, only the newest
+ * snapshot is written. Background reads ({@link #read}) share the same thread,
+ * so a read always sees every save queued before it.
+ *
+ * The journaled overflow store writes its snapshots on its own
+ * {@link RecordJournal} thread, since the journal may only be truncated after the
+ * snapshot is on disk; it shares {@link #writeAtomically} and {@link #loadYaml}.
+ */
+public final class PersistenceService {
+
+    /** Builds a file's YAML from a copy taken on the server thread. Runs on the I/O thread. */
+    public interface Snapshot {
+        YamlConfiguration build() throws IOException;
+    }
+
+    // Latest snapshot per file that hasn't been written yet
+    private static final Map<File, Snapshot> pending = new ConcurrentHashMap<>();
+    private static ExecutorService io;
+    private static volatile boolean compress = false;
+
+    private PersistenceService() {}
+
+    public static void initialize() {
+        compress = ConfigManager.isCompressedSaves();
+        if (io == null || io.isShutdown()) io = Executors.newSingleThreadExecutor(ioThreadFactory());
+    }
+
+    /**
+     * Queues a write of {@code file}. Returns immediately; a newer save of the same
+     * file queued before this one starts replaces it.
+     */
+    public static void save(File file, Snapshot snapshot) {
+        if (io == null || io.isShutdown()) initialize();
+        if (pending.put(file, snapshot) != null) return; // a write is already queued — it picks up the newest
+        io.execute(() -> {
+            Snapshot latest = pending.remove(file);
+            if (latest == null) return;
+            try {
+                writeAtomically(file, latest.build().saveToString());
+            } catch (IOException ex) {
+                Bukkit.getLogger().severe("[RecycleTable] Failed to save " + file.getName() + ": " + ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Reads {@code file} with {@link #loadYaml} on the I/O thread and hands the result
+     * to {@code done} on the server thread. Dropped if the plugin is disabled first.
+     */
+    public static void read(File file, Consumer<YamlConfiguration> done) {
+        if (io == null || io.isShutdown()) initialize();
+        RecycleTable plugin = RecycleTable.getInstance();
+        io.execute(() -> {
+            YamlConfiguration yaml = loadYaml(file);
+            if (plugin.isEnabled()) Bukkit.getScheduler().runTask(plugin, () -> done.accept(yaml));
+        });
+    }
+
+    /** Writes every queued save and stops the I/O thread. Blocks; call from onDisable. */
+    public static void shutdown() {
+        if (io == null) return;
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(30, TimeUnit.SECONDS))
+                Bukkit.getLogger().severe("[RecycleTable] Timed out writing data files on shutdown");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        io = null;
+    }
+
+    /**
+     * Writes {@code text} to a temp file beside {@code file} (gzipped if enabled),
+     * then renames it over the original so readers never see a partial file.
+     */
+    public static void writeAtomically(File file, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (compress) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            try (OutputStream gz = new GZIPOutputStream(buffer)) {
+                gz.write(bytes);
+            }
+            bytes = buffer.toByteArray();
+        }
+
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+        File tmp = new File(dir, file.getName() + ".tmp");
+        Files.write(tmp.toPath(), bytes);
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a data file written by this class, plain or gzipped (detected from the
+     * content, so persistence.compress can be switched either way). Returns an empty
+     * configuration if the file is missing or unreadable.
+     */
+    public static YamlConfiguration loadYaml(File file) {
+        YamlConfiguration yaml = new YamlConfiguration();
+        if (!file.exists()) return yaml;
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0x1F && (bytes[1] & 0xFF) == 0x8B) {
+                try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+                    byte[] buf = new byte[8192];
+                    int n;
+                    while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+                    bytes = out.toByteArray();
+                }
+            }
+            yaml.loadFromString(new String(bytes, StandardCharsets.UTF_8));
+        } catch (Exception ex) {
+            Bukkit.getLogger().severe("[RecycleTable] Failed to read " + file.getName() + ": " + ex.getMessage());
+        }
+        return yaml;
+    }
+
+    // Java 21's Thread.ofVirtual() is looked up reflectively so the plugin still runs on Java 8–20
+    private static ThreadFactory ioThreadFactory() {
+        try {
+            // Call through the public Thread.Builder interface — the implementing class isn't accessible
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class).invoke(builder, "RecycleTable-IO");
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return r -> {
+                Thread t = new Thread(r, "RecycleTable-IO");
+                t.setDaemon(true);
+                return t;
+            };
+        }
+    }
+}
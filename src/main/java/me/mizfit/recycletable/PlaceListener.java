@@ -8,7 +8,6 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
-import org.bukkit.inventory.Inventory;
 
 public class PlaceListener implements Listener {
 
@@ -16,24 +15,25 @@ public class PlaceListener implements Listener {
     public void onPlace(BlockPlaceEvent e) {
         if (!RecyclingTableItem.isRecyclingTable(e.getItemInHand())) return;
 
-        // Enforce one-table-per-player limit
-        if (TablePersistence.hasPlacedTable(e.getPlayer().getUniqueId())) {
+        // Enforce the per-player table limit
+        int limit = ConfigManager.getMaxTablesPerPlayer();
+        if (TablePersistence.countPlacedTables(e.getPlayer().getUniqueId()) >= limit) {
             e.setCancelled(true);
-            e.getPlayer().sendMessage(ChatColor.RED + "You can only have one Recycling Table placed at a time.");
+            e.getPlayer().sendMessage(ChatColor.RED + (limit == 1
+                    ? "You can only have one Recycling Table placed at a time."
+                    : "You can only have " + limit + " Recycling Tables placed at a time."));
             return;
         }
 
-        Block b = e.getBlockPlaced();
-        Inventory inv = TablePersistence.createInventoryForBlock(b);
-        TablePersistence.registerInventoryForBlock(b, inv);
-        TablePersistence.setOwner(b, e.getPlayer().getUniqueId());
-        HologramManager.spawnHologram(b.getLocation());
+        TableRecord table = TablePersistence.registerTable(e.getBlockPlaced(), e.getPlayer().getUniqueId());
+        HologramManager.spawnHologram(table);
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = false)
     public void onBreak(BlockBreakEvent e) {
         Block b = e.getBlock();
-        if (!TablePersistence.isRecyclingTableBlock(b)) return;
+        TableRecord table = TablePersistence.getTable(b);
+        if (table == null) return;
 
         // Respect any earlier protection plugin cancellation
         if (e.isCancelled()) return;
@@ -41,10 +41,9 @@ public class PlaceListener implements Listener {
         Player p = e.getPlayer();
 
         // Only the owner can break their own table — claim trust does not apply here
-        if (!TablePersistence.isOwner(b, p)) {
+        if (!table.isOwnedBy(p)) {
             e.setCancelled(true);
-            String key = HologramManager.keyFor(b.getLocation());
-            java.util.UUID ownerUuid = TablePersistence.getOwner(key);
+            java.util.UUID ownerUuid = table.getOwner();
             String ownerName = ownerUuid != null
                     ? org.bukkit.Bukkit.getOfflinePlayer(ownerUuid).getName()
                     : "someone else";
@@ -54,7 +53,6 @@ public class PlaceListener implements Listener {
         }
 
         b.getWorld().dropItemNaturally(b.getLocation(), RecyclingTableItem.createItem());
-        HologramManager.removeHologram(HologramManager.keyFor(b.getLocation()));
         TablePersistence.unregisterBlock(b);
     }
 }
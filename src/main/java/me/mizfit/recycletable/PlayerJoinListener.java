@@ -11,8 +11,8 @@ public class PlayerJoinListener implements Listener {
     @EventHandler
     public void onJoin(PlayerJoinEvent e) {
         UUID id = e.getPlayer().getUniqueId();
-        RecycleSession s = SessionManager.getSession(id);
-        if (s != null && s.isActive()) {
+        for (RecycleSession s : SessionManager.getSessionsOf(id)) {
+            if (!s.isActive()) continue;
             long mins = s.getTimeLeft() / 1200L; // ticks -> minutes
             e.getPlayer().sendMessage(ChatColor.YELLOW + "Your recycling process has resumed. Time left: " + mins + " minutes.");
         }
@@ -0,0 +1,81 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Plugin-wide driver for every RecycleSession.
+ *
+ * A single 1-tick Bukkit task advances one {@link TimingWheel}; sessions file a
+ * timer for the tick their current item completes instead of running their own
+ * BukkitRunnable. Hologram redraws are not done here — HologramManager runs its
+ * own budgeted render pass.
+ *
+ * Queue depth and per-tick cost are exposed for /recycletable stats.
+ */
+public class ProcessingScheduler {
+
+    private static final TimingWheel wheel = new TimingWheel();
+    // Sessions with an item in progress (reported by /recycletable stats)
+    private static final Set<RecycleSession> running = new LinkedHashSet<>();
+
+    private static BukkitTask task;
+
+    // Per-tick cost tracking (nanoseconds)
+    private static long   lastTickNanos = 0L;
+    private static long   maxTickNanos  = 0L;
+    private static double avgTickNanos  = 0.0;
+    private static long   completions   = 0L;
+
+    public static void initialize(JavaPlugin plugin) {
+        if (task != null) task.cancel();
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, ProcessingScheduler::tick, 1L, 1L);
+    }
+
+    public static void shutdown() {
+        if (task != null) task.cancel();
+        task = null;
+    }
+
+    /** Current scheduler tick. Session deadlines are expressed in this clock. */
+    public static long currentTick() { return wheel.currentTick(); }
+
+    /** Schedules a completion callback {@code delayTicks} from now. */
+    public static TimingWheel.Timer schedule(Runnable completion, long delayTicks) {
+        return wheel.schedule(completion, delayTicks);
+    }
+
+    public static void cancel(TimingWheel.Timer timer) {
+        wheel.cancel(timer);
+    }
+
+    /** Tracks a session while it has an item in progress. */
+    public static void track(RecycleSession session) { running.add(session); }
+    public static void untrack(RecycleSession session) { running.remove(session); }
+
+    // ── Stats ─────────────────────────────────────────────────────────────────
+
+    /** Number of pending item completions. */
+    public static int getQueueDepth() { return wheel.size(); }
+    public static int getRunningCount() { return running.size(); }
+    public static long getLastTickNanos() { return lastTickNanos; }
+    public static long getMaxTickNanos() { return maxTickNanos; }
+    public static double getAverageTickNanos() { return avgTickNanos; }
+    public static long getCompletions() { return completions; }
+
+    // ── Tick ──────────────────────────────────────────────────────────────────
+
+    private static void tick() {
+        long start = System.nanoTime();
+
+        completions += wheel.advance();
+
+        lastTickNanos = System.nanoTime() - start;
+        if (lastTickNanos > maxTickNanos) maxTickNanos = lastTickNanos;
+        // Exponential moving average over roughly the last 5 seconds
+        avgTickNanos += (lastTickNanos - avgTickNanos) / 100.0;
+    }
+}
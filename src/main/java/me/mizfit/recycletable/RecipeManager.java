@@ -26,14 +26,22 @@ import java.util.*;
  *
  * Decomposition depth is capped at MAX_DECOMPOSE_DEPTH so natural-drop items
  * (leather, string, …) are not chased to their sub-crafting ingredients.
+ *
+ * The full raw-material closure of every Material is computed once at index
+ * time into a {@link DecompositionMatrix} (compressed sparse rows indexed by
+ * ordinal), so recycling an item is a lookup with no allocation.
  */
 public class RecipeManager {
 
     private static final int MAX_DECOMPOSE_DEPTH = 2;
 
-    private static final Map<Material, RecipeData>           recipes   = new HashMap<>();
-    private static final Set<Material>                       blacklist = new HashSet<>();
-    private static final Map<Material, Map<Material, Double>> fracCache = new HashMap<>();
+    private static final Material[] MATERIALS = Material.values();
+
+    private static final Map<Material, RecipeData> recipes   = new HashMap<>();
+    private static final Set<Material>             blacklist = new HashSet<>();
+
+    // Swapped in whole after each re-index so readers never see a partial matrix
+    private static volatile DecompositionMatrix decomposition = DecompositionMatrix.EMPTY;
 
     // ── Init ─────────────────────────────────────────────────────────────────
 
@@ -56,7 +64,6 @@ public class RecipeManager {
 
     private static void generateAllRecipes() {
         recipes.clear();
-        fracCache.clear();
 
         // Iterate every registered recipe in load order.
         // Vanilla recipes are registered first, so the first shaped/shapeless
@@ -126,7 +133,46 @@ public class RecipeManager {
                         Collections.singletonList(new ItemStack(mat, 1)), 1));
         }
 
-        Bukkit.getLogger().info("[RecycleTable] Indexed " + recipes.size() + " recipes.");
+        decomposition = buildDecomposition();
+
+        Bukkit.getLogger().info("[RecycleTable] Indexed " + recipes.size() + " recipes ("
+                + decomposition.size() + " decomposition entries).");
+    }
+
+    /** Resolves the fractional raw-material closure of every Material into one CSR matrix. */
+    private static DecompositionMatrix buildDecomposition() {
+        int[] rowStart = new int[MATERIALS.length + 1];
+        List<Map<Material, Double>> rows = new ArrayList<>(MATERIALS.length);
+        int nnz = 0;
+
+        for (Material mat : MATERIALS) {
+            Map<Material, Double> row;
+            if (mat == Material.AIR) {
+                row = Collections.emptyMap();
+            } else {
+                try { row = toFractional(mat, new HashSet<>(), 0); }
+                catch (Throwable ignored) { row = singleFrac(mat, 1.0); }
+            }
+            rows.add(row);
+            nnz += row.size();
+        }
+
+        int[] ids = new int[nnz];
+        double[] fractions = new double[nnz];
+        int pos = 0;
+        for (int ord = 0; ord < MATERIALS.length; ord++) {
+            rowStart[ord] = pos;
+            // Sort by ordinal so output slot order is stable between restarts
+            List<Map.Entry<Material, Double>> entries = new ArrayList<>(rows.get(ord).entrySet());
+            entries.sort(Comparator.comparingInt(e -> e.getKey().ordinal()));
+            for (Map.Entry<Material, Double> e : entries) {
+                ids[pos] = e.getKey().ordinal();
+                fractions[pos] = e.getValue();
+                pos++;
+            }
+        }
+        rowStart[MATERIALS.length] = pos;
+        return new DecompositionMatrix(rowStart, ids, fractions);
     }
 
     // ── Public API ────────────────────────────────────────────────────────────
@@ -137,17 +183,24 @@ public class RecipeManager {
     }
     public static int getRecipeCount() { return recipes.size(); }
 
+    /** The precomputed raw-material closure of every Material. */
+    public static DecompositionMatrix getDecomposition() { return decomposition; }
+
+    /** Replaces the matrix without reading server recipes. Used by the allocation test. */
+    static void setDecomposition(DecompositionMatrix matrix) { decomposition = matrix; }
+
     /**
      * Returns the raw crafting ingredients for ONE unit of item.getType().
      * processSingleItem multiplies by stack size separately.
+     * Allocates a fresh list — hot paths should read {@link #getDecomposition()} directly.
      */
     public static List<ItemStack> decomposeToRaw(ItemStack item) {
         if (item == null || item.getType() == Material.AIR) return Collections.emptyList();
-        Map<Material, Double> fractions = toFractional(item.getType(), new HashSet<>(), 0);
-        List<ItemStack> result = new ArrayList<>();
-        for (Map.Entry<Material, Double> e : fractions.entrySet()) {
-            int amt = (int) Math.max(1, Math.round(e.getValue()));
-            result.add(new ItemStack(e.getKey(), amt));
+        DecompositionMatrix matrix = decomposition;
+        int ord = item.getType().ordinal();
+        List<ItemStack> result = new ArrayList<>(matrix.end(ord) - matrix.start(ord));
+        for (int i = matrix.start(ord); i < matrix.end(ord); i++) {
+            result.add(new ItemStack(matrix.material(i), matrix.amount(i)));
         }
         return result;
     }
@@ -169,11 +222,6 @@ public class RecipeManager {
         if (recipe == null || isSelfRef(recipe, mat))
             return singleFrac(mat, 1.0);
 
-        // Only cache top-level results (empty seen set) to avoid storing
-        // context-dependent results that would be wrong on re-use.
-        if (seen.isEmpty() && fracCache.containsKey(mat))
-            return fracCache.get(mat);
-
         seen.add(mat);
         int yield = recipe.getResultAmount();
         Map<Material, Double> result = new HashMap<>();
@@ -198,7 +246,6 @@ public class RecipeManager {
             }
         }
 
-        if (seen.size() == 1) fracCache.put(mat, result); // only cache root calls
         return result;
     }
 
@@ -211,6 +258,37 @@ public class RecipeManager {
         return ing.size() == 1 && ing.get(0).getType() == mat;
     }
 
+    // ── DecompositionMatrix ───────────────────────────────────────────────────
+
+    /**
+     * Compressed sparse rows: row {@code ord} spans entries {@code start(ord)} to
+     * {@code end(ord) - 1}, each holding a raw Material ordinal and the fraction
+     * of it that goes into one unit of the row's Material. Immutable.
+     */
+    public static final class DecompositionMatrix {
+        static final DecompositionMatrix EMPTY =
+                new DecompositionMatrix(new int[MATERIALS.length + 1], new int[0], new double[0]);
+
+        private final int[]    rowStart;
+        private final int[]    materialIds;
+        private final double[] fractions;
+
+        DecompositionMatrix(int[] rowStart, int[] materialIds, double[] fractions) {
+            this.rowStart = rowStart;
+            this.materialIds = materialIds;
+            this.fractions = fractions;
+        }
+
+        public int start(int ordinal)       { return rowStart[ordinal]; }
+        public int end(int ordinal)         { return rowStart[ordinal + 1]; }
+        public int materialId(int entry)    { return materialIds[entry]; }
+        public Material material(int entry) { return MATERIALS[materialIds[entry]]; }
+        public double fraction(int entry)   { return fractions[entry]; }
+        /** Whole units per item, rounded as recycling has always paid out (never below 1). */
+        public int amount(int entry)        { return (int) Math.max(1, Math.round(fractions[entry])); }
+        public int size()                   { return materialIds.length; }
+    }
+
     // ── RecipeData ────────────────────────────────────────────────────────────
 
     public static class RecipeData {
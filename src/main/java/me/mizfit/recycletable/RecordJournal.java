@@ -0,0 +1,242 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Bukkit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, checksummed record log with write-behind on a background thread.
+ *
+ * Each record carries a monotonically increasing sequence number. Owners write a
+ * snapshot that remembers the last sequence it contains, then ask the journal to
+ * truncate; on startup only records newer than the snapshot are replayed, so a
+ * crash between "snapshot written" and "journal truncated" never applies a
+ * record twice.
+ *
+ * Frame layout: [int length][int crc32][long seq][payload…] — length and crc
+ * cover seq + payload. Replay stops at the first torn or corrupt frame.
+ *
+ * append() and compact() are called from the server thread; all disk I/O
+ * (including fsync, batched when several appends are queued) runs on the
+ * journal's own single writer thread, in submission order. A {@link Payload}
+ * is encoded on that thread too, so the server thread only hands over a copy.
+ */
+public class RecordJournal {
+
+    private static final int HEADER_BYTES = 8;
+
+    private final File file;
+    private final ExecutorService writer;
+    private final AtomicInteger pendingAppends = new AtomicInteger();
+
+    private FileChannel channel;       // writer thread only
+    private long lastSeq = 0L;         // server thread only
+    private final AtomicLong bytesSinceCompact = new AtomicLong();
+
+    /** A replayed record. */
+    public static final class Entry {
+        public final long seq;
+        public final byte[] payload;
+        Entry(long seq, byte[] payload) { this.seq = seq; this.payload = payload; }
+    }
+
+    /** Builds a record's bytes. Runs on the writer thread. */
+    public interface Payload {
+        byte[] encode() throws IOException;
+    }
+
+    /** Writes a full snapshot that includes every record up to {@code lastSeq}. */
+    public interface SnapshotWriter {
+        void write(long lastSeq) throws IOException;
+    }
+
+    public RecordJournal(File file, String name) {
+        this.file = file;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "RecycleTable-Journal-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Reads every intact record newer than {@code afterSeq}, cuts off any torn tail,
+     * and continues numbering from the highest sequence seen. Call once, before
+     * the first append.
+     */
+    public List<Entry> replay(long afterSeq) {
+        List<Entry> entries = new ArrayList<>();
+        lastSeq = afterSeq;
+        if (!file.exists()) return entries;
+
+        long validLength = 0L;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try { length = in.readInt(); } catch (EOFException eof) { break; }
+                int crc = in.readInt();
+                if (length < 8 || length > (64 << 20)) break;
+                byte[] body = new byte[length];
+                in.readFully(body);
+                CRC32 check = new CRC32();
+                check.update(body, 0, body.length);
+                if ((int) check.getValue() != crc) break;
+
+                long seq = ByteBuffer.wrap(body, 0, 8).getLong();
+                byte[] payload = new byte[length - 8];
+                System.arraycopy(body, 8, payload, 0, payload.length);
+                validLength += HEADER_BYTES + length;
+                if (seq > lastSeq) lastSeq = seq;
+                if (seq > afterSeq) entries.add(new Entry(seq, payload));
+            }
+        } catch (EOFException torn) {
+            // Partial frame at the tail from a crash mid-write — everything before it is intact
+        } catch (IOException ex) {
+            Bukkit.getLogger().warning("[RecycleTable] Failed to read journal " + file.getName() + ": " + ex.getMessage());
+        }
+
+        if (validLength < file.length()) {
+            Bukkit.getLogger().warning("[RecycleTable] Discarding " + (file.length() - validLength)
+                    + " torn byte(s) at the end of " + file.getName());
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(validLength);
+            } catch (IOException ex) {
+                Bukkit.getLogger().warning("[RecycleTable] Failed to truncate " + file.getName() + ": " + ex.getMessage());
+            }
+        }
+        bytesSinceCompact.set(validLength);
+        return entries;
+    }
+
+    /** Queues a record for writing and returns its sequence number. */
+    public long append(byte[] payload) {
+        return append(() -> payload);
+    }
+
+    /**
+     * Queues a record that is encoded on the writer thread and returns its sequence
+     * number. {@code payload} must only read data nothing else will change.
+     */
+    public long append(Payload payload) {
+        final long seq = ++lastSeq;
+        pendingAppends.incrementAndGet();
+        writer.execute(() -> {
+            try {
+                ByteBuffer frame = frame(seq, payload.encode());
+                bytesSinceCompact.addAndGet(frame.remaining());
+                FileChannel ch = channel();
+                while (frame.hasRemaining()) ch.write(frame);
+            } catch (IOException | RuntimeException ex) {
+                Bukkit.getLogger().severe("[RecycleTable] Journal write failed for " + file.getName() + ": " + ex.getMessage());
+            }
+            // Group commit: only fsync once the burst of queued appends is drained
+            if (pendingAppends.decrementAndGet() == 0) {
+                try {
+                    channel().force(false);
+                } catch (IOException ex) {
+                    Bukkit.getLogger().severe("[RecycleTable] Journal sync failed for " + file.getName() + ": " + ex.getMessage());
+                }
+            }
+        });
+        return seq;
+    }
+
+    /** Sequence number of the most recently appended (or replayed) record. */
+    public long lastSeq() { return lastSeq; }
+
+    /** Bytes written to the journal since it was last truncated. */
+    public long sizeBytes() { return bytesSinceCompact.get(); }
+
+    /**
+     * Queues a snapshot write followed by a journal truncate. Everything appended
+     * before this call is covered by the snapshot; later appends go to the fresh journal.
+     */
+    public void compact(SnapshotWriter snapshot) {
+        final long seq = lastSeq;
+        bytesSinceCompact.set(0L);
+        writer.execute(() -> runCompaction(snapshot, seq));
+    }
+
+    /** Runs a final compaction synchronously and stops the writer thread. */
+    public void close(SnapshotWriter snapshot) {
+        final long seq = lastSeq;
+        writer.execute(() -> runCompaction(snapshot, seq));
+        close();
+    }
+
+    /**
+     * Waits for every queued append to reach disk and stops the writer thread,
+     * leaving the journal in place to be replayed on the next start. Blocks.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS))
+                Bukkit.getLogger().severe("[RecycleTable] Timed out flushing journal " + file.getName());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    // ── Writer thread ─────────────────────────────────────────────────────────
+
+    private void runCompaction(SnapshotWriter snapshot, long seq) {
+        try {
+            snapshot.write(seq);
+            FileChannel ch = channel();
+            ch.truncate(0L);
+            ch.force(true);
+        } catch (IOException ex) {
+            // Journal is left intact, so nothing is lost — replay covers it next start
+            Bukkit.getLogger().severe("[RecycleTable] Snapshot for " + file.getName() + " failed: " + ex.getMessage());
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private static ByteBuffer frame(long seq, byte[] payload) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(8 + payload.length);
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeLong(seq);
+            out.write(payload);
+            byte[] bytes = body.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + bytes.length);
+            frame.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes);
+            frame.flip();
+            return frame;
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // in-memory stream never throws
+        }
+    }
+}
@@ -4,11 +4,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
 
@@ -19,329 +15,548 @@ import java.util.*;
  */
 public class RecycleSession {
     private final UUID owner;
-    private final LinkedList<ItemStack> queue = new LinkedList<>();
-    private final Inventory guiInventory;
+    // Waiting items with their processing time, worked out once when queued
+    private final ArrayDeque<QueuedItem> queue = new ArrayDeque<>();
+    /** Sum of {@code seconds} over everything in {@link #queue}, kept in step by enqueue/poll. */
+    private long queuedSeconds = 0L;
 
     private volatile boolean active = false;
-    private long timeLeftTicks = 0L;
+    private long totalTicks = 0L;
     private int currentComplexity = 1;
     private double progress = 0.0;
     private long lastActiveTime;
 
     /** The item currently being processed (used by HologramManager). */
     private ItemStack currentItem = null;
-    /** Key of the placed table block this session is attached to. */
-    private String tableKey = null;
-    /** Handle to the running timer so it can be cancelled on stop. */
-    private BukkitTask currentTask = null;
-
-    public RecycleSession(UUID owner, List<ItemStack> inputs, Inventory guiInventory) {
+    /** The placed table this session is attached to, or null if it isn't registered. */
+    private TableRecord table = null;
+    /** Saved "world:x:y:z" key, kept only while the table isn't registered so it isn't lost. */
+    private String savedTableKey = null;
+    /** The table's position, attached or not; null if the saved key couldn't be parsed. */
+    private TableKey key = null;
+    /** Completion timer on the global scheduler, so it can be cancelled on stop. */
+    private TimingWheel.Timer completionTimer = null;
+
+    public RecycleSession(UUID owner, List<ItemStack> inputs) {
         this.owner = owner;
-        this.guiInventory = guiInventory;
         this.lastActiveTime = System.currentTimeMillis();
 
         // Queue full stacks — time and output are scaled by amount in processing
         for (ItemStack is : inputs) {
             if (is != null && is.getType() != Material.AIR && is.getAmount() > 0) {
-                queue.add(is.clone());
+                enqueue(is.clone());
             }
         }
     }
 
-    public RecycleSession(UUID owner, List<ItemStack> queuedItems, Inventory guiInventory, long lastActiveTime) {
+    public RecycleSession(UUID owner, List<ItemStack> queuedItems, long lastActiveTime) {
         this.owner = owner;
-        this.guiInventory = guiInventory;
         this.lastActiveTime = lastActiveTime;
-        if (queuedItems != null) queue.addAll(queuedItems);
+        if (queuedItems != null) {
+            for (ItemStack is : queuedItems) {
+                if (is != null) enqueue(is);
+            }
+        }
+    }
+
+    /** A waiting item and how long it will take, at the speed in effect when it was queued. */
+    private static final class QueuedItem {
+        final ItemStack item;
+        final long seconds;
+        QueuedItem(ItemStack item, long seconds) { this.item = item; this.seconds = seconds; }
+    }
+
+    private void enqueue(ItemStack item) {
+        long seconds = item.getType() == Material.AIR ? 0L : processingSeconds(item);
+        queue.add(new QueuedItem(item, seconds));
+        queuedSeconds += seconds;
+    }
+
+    private ItemStack pollQueue() {
+        QueuedItem next = queue.poll();
+        if (next == null) return null;
+        queuedSeconds -= next.seconds;
+        return next.item;
     }
 
+    /** Full processing time of a stack: complexity, speed multiplier, then stack size. */
+    private static long processingSeconds(ItemStack item) {
+        int complexity = Math.max(1, Math.min(250, ComplexityCalculator.calculateComplexity(item)));
+        long seconds = ComplexityCalculator.mapScoreToSeconds(complexity);
+        seconds = (long) Math.ceil(seconds / ConfigManager.getSpeedMultiplier());
+        return seconds * item.getAmount();
+    }
+
+    public UUID getOwner() { return owner; }
     public boolean isActive() { return active; }
-    public long getTimeLeft() { return timeLeftTicks; }
-    public double getProgress() { return progress; }
-    public List<ItemStack> serializeItems() { return new ArrayList<>(queue); }
-    public long getLastActiveTime() { return lastActiveTime; }
+    public List<ItemStack> serializeItems() { return getQueuedItems(); }
+
+    /** Ticks left on the current item, derived from its completion deadline. */
+    public long getTimeLeft() {
+        if (!active || completionTimer == null) return 0L;
+        return Math.max(0L, completionTimer.getDeadline() - ProcessingScheduler.currentTick());
+    }
+
+    public double getProgress() {
+        if (!active || completionTimer == null || totalTicks <= 0) return progress;
+        return 1.0 - (getTimeLeft() / (double) totalTicks);
+    }
+
+    /** A running session is active "now"; otherwise the time it last made progress. */
+    public long getLastActiveTime() {
+        return active ? System.currentTimeMillis() : lastActiveTime;
+    }
 
     /** Returns the item currently being processed, or null if idle. */
     public ItemStack getCurrentItem() { return currentItem; }
 
     /** Returns a snapshot of items waiting in the queue (excludes the current item). */
-    public List<ItemStack> getQueuedItems() { return new ArrayList<>(queue); }
+    public List<ItemStack> getQueuedItems() {
+        List<ItemStack> items = new ArrayList<>(queue.size());
+        for (QueuedItem q : queue) items.add(q.item);
+        return items;
+    }
+
+    /** Number of items waiting in the queue (excludes the current item). */
+    public int getQueuedCount() { return queue.size(); }
 
-    /** Links this session to a placed table block so its hologram and overflow can be updated. */
-    public void setTableKey(String key) { this.tableKey = key; }
-    public String getTableKey() { return tableKey; }
+    /** Estimated seconds to process everything waiting in the queue (excludes the current item). */
+    public long getQueuedSeconds() { return queuedSeconds; }
 
     /**
-     * Start or resume a session, applying offline progress.
+     * Links this session to a placed table so its hologram and overflow can be updated.
+     * Must be set before the session is registered with SessionManager.
      */
-    public void start(JavaPlugin plugin, long offlineSeconds) {
-        if (queue.isEmpty()) {
-            finish();
-            return;
+    public void setTable(TableRecord table) {
+        this.table = table;
+        this.savedTableKey = null;
+        if (table != null) this.key = table.getKey();
+    }
+
+    /**
+     * Links this session to a table by its saved key, reading the table's shard if
+     * its chunk isn't loaded. The table may not exist (broken, or its world is gone).
+     */
+    public void setTableKey(String key) {
+        TableKey parsed = TablePersistence.parseKey(key);
+        TableRecord found = TablePersistence.loadTable(parsed);
+        if (found != null) {
+            setTable(found);
+        } else {
+            this.table = null;
+            this.savedTableKey = key;
+            this.key = parsed;
         }
+    }
 
-        while (!queue.isEmpty() && offlineSeconds > 0) {
-            ItemStack peek = queue.peek();
-            int complexity = Math.max(1, Math.min(250, ComplexityCalculator.calculateComplexity(peek)));
-            long totalSeconds = ComplexityCalculator.mapScoreToSeconds(complexity);
-            totalSeconds = (long) Math.ceil(totalSeconds / ConfigManager.getSpeedMultiplier());
-            totalSeconds *= peek.getAmount(); // scale time by stack size
-
-            if (offlineSeconds >= totalSeconds) {
-                processSingleItem(peek);
-                queue.poll();
-                offlineSeconds -= totalSeconds;
-            } else {
-                startProcessing(plugin, peek, totalSeconds - offlineSeconds);
+    /** The table's "world:x:y:z" key for saving, or null if the session isn't attached. */
+    public String getTableKey() {
+        return table != null ? TablePersistence.legacyKey(table.getKey()) : savedTableKey;
+    }
+    public TableRecord getTable() { return table; }
+    /** The table's position, whether or not it is attached yet; null if it is unknown. */
+    TableKey getKey() { return key; }
+
+    /**
+     * Puts the item that was being processed when the session was saved back at the
+     * head of the queue, with the time it still had left.
+     */
+    public void restoreCurrent(ItemStack item, long secondsLeft) {
+        if (item == null || item.getType() == Material.AIR) return;
+        long seconds = Math.max(1L, secondsLeft);
+        queue.addFirst(new QueuedItem(item, seconds));
+        queuedSeconds += seconds;
+    }
+
+    /**
+     * Start or resume a session, applying offline progress.
+     *
+     * Entries that finished during the {@code offlineSeconds} aren't processed one by
+     * one: how many finished is read off the running total of their stored times
+     * (all of them, when the downtime covers {@link #getQueuedSeconds()}), and their
+     * outputs are folded into one {@link OutputDelta} that {@link OfflineCatchUp}
+     * places in the table over the next ticks. The entry that was part-way through
+     * hands over the items of its stack that finished; the rest get a timer.
+     */
+    public void start(long offlineSeconds) {
+        if (offlineSeconds > 0 && !queue.isEmpty()) {
+            OutputDelta delta = new OutputDelta();
+            int done = queue.size();
+            if (offlineSeconds >= queuedSeconds) {
                 offlineSeconds = 0;
-                return;
+            } else {
+                long[] ends = new long[queue.size()];
+                long sum = 0L;
+                int i = 0;
+                for (QueuedItem q : queue) ends[i++] = sum += q.seconds;
+                done = finishedBy(ends, offlineSeconds);
+                if (done > 0) offlineSeconds -= ends[done - 1];
+            }
+            for (int i = 0; i < done; i++) delta.add(pollQueue());
+
+            // Split the entry in progress: whole items it finished are output now
+            if (!queue.isEmpty() && offlineSeconds > 0) {
+                QueuedItem head = queue.peek();
+                int amount = head.item.getAmount();
+                int finished = (int) Math.min(amount - 1, offlineSeconds * amount / Math.max(1L, head.seconds));
+                if (finished > 0) {
+                    ItemStack part = head.item.clone();
+                    part.setAmount(finished);
+                    delta.addPart(part);
+                    ItemStack rest = head.item.clone();
+                    rest.setAmount(amount - finished);
+                    queue.poll();
+                    queue.addFirst(new QueuedItem(rest, head.seconds)); // time left is still seconds - offline
+                }
             }
+            if (!delta.isEmpty()) OfflineCatchUp.submit(this, delta);
         }
 
         if (queue.isEmpty()) {
             finish();
-        } else {
-            startProcessing(plugin, queue.poll(), 0);
+            return;
+        }
+        long remaining = queue.peek().seconds - offlineSeconds;
+        startProcessing(pollQueue(), remaining);
+    }
+
+    /** Number of entries whose running-total end time is within {@code seconds}. */
+    private static int finishedBy(long[] ends, long seconds) {
+        int lo = 0, hi = ends.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ends[mid] <= seconds) lo = mid + 1;
+            else hi = mid;
         }
+        return lo;
     }
 
     /**
-     * Stops the current session immediately. The item that was being processed
-     * is left in its input slot (it was never cleared) so it will be re-queued
-     * at full time if the player clicks Recycle again.
+     * Stops the current session immediately and unregisters it. The item that was
+     * being processed is left in its input slot (it was never cleared) so it will
+     * be re-queued at full time if the player clicks Recycle again.
      */
     public void stop() {
+        SessionManager.unregisterSession(this);
         if (!active) return;
         active = false;
-        if (currentTask != null) {
-            currentTask.cancel();
-            currentTask = null;
-        }
+        ProcessingScheduler.cancel(completionTimer);
+        ProcessingScheduler.untrack(this);
+        completionTimer = null;
         currentItem = null;
-        timeLeftTicks = 0;
+        lastActiveTime = System.currentTimeMillis();
         progress = 0.0;
-        HologramManager.refreshIdle(tableKey);
+        HologramManager.markDirty(table);
         // Button is updated by TableListener immediately after calling stop()
     }
 
-    private void startProcessing(JavaPlugin plugin, ItemStack item, long remainingSeconds) {
+    private void startProcessing(ItemStack item, long remainingSeconds) {
         active = true;
         currentItem = item;
         currentComplexity = Math.max(1, Math.min(250, ComplexityCalculator.calculateComplexity(item)));
         long totalSeconds = ComplexityCalculator.mapScoreToSeconds(currentComplexity);
         totalSeconds = (long) Math.ceil(totalSeconds / ConfigManager.getSpeedMultiplier());
         totalSeconds *= item.getAmount(); // scale time by stack size
+        // A restored item may have more left than a fresh one would take at today's speed
+        totalSeconds = Math.max(totalSeconds, remainingSeconds);
 
         // Dev mode: process instantly without scheduling a timer
         if (ConfigManager.isInstantProcessing()) {
             processSingleItem(item);
             clearProcessedInputSlot(item);
             active = false;
-            HologramManager.refresh(tableKey, this);
-            if (!queue.isEmpty()) startProcessing(plugin, queue.poll(), 0);
+            HologramManager.markDirty(table);
+            if (!queue.isEmpty()) startProcessing(pollQueue(), 0);
             else finish();
             return;
         }
 
         long secondsToRun = (remainingSeconds > 0 ? remainingSeconds : totalSeconds);
-        this.timeLeftTicks = secondsToRun * 20L;
+        this.totalTicks = totalSeconds * 20L;
         this.progress = 1.0 - (secondsToRun / (double) totalSeconds);
         this.lastActiveTime = System.currentTimeMillis();
 
-        final long total = totalSeconds;
-        final long[] remaining = { timeLeftTicks };
+        completionTimer = ProcessingScheduler.schedule(this::completeCurrentItem, secondsToRun * 20L);
+        ProcessingScheduler.track(this);
+        HologramManager.markDirty(table);
+    }
 
-        currentTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!active) {
-                    this.cancel();
-                    return;
-                }
-                if (remaining[0] <= 0) {
-                    processSingleItem(item);
-                    clearProcessedInputSlot(item);
-                    this.cancel();
-                    currentTask = null;
-                    active = false;
-
-                    if (!queue.isEmpty()) startProcessing(plugin, queue.poll(), 0);
-                    else finish();
-
-                    HologramManager.refresh(tableKey, RecycleSession.this);
-                    return;
-                }
+    /** Fired by the global scheduler on the tick the current item finishes. */
+    private void completeCurrentItem() {
+        completionTimer = null;
+        if (!active) return;
 
-                remaining[0] -= 20L;
-                timeLeftTicks = remaining[0];
-                progress = 1.0 - (remaining[0] / (double) (total * 20L));
-                lastActiveTime = System.currentTimeMillis();
+        ItemStack item = currentItem;
+        processSingleItem(item);
+        clearProcessedInputSlot(item);
+        active = false;
 
-                HologramManager.refresh(tableKey, RecycleSession.this);
-            }
-        }.runTaskTimer(plugin, 0L, 20L);
+        if (!queue.isEmpty()) startProcessing(pollQueue(), 0);
+        else finish();
+
+        HologramManager.markDirty(table);
     }
 
     private void processSingleItem(ItemStack item) {
-        List<ItemStack> decomposed = RecipeManager.decomposeToRaw(item);
-        double durabilityFactor = CompatibilityUtils.getDurabilityFactor(item);
-        Map<Material, Integer> aggregated = new HashMap<>();
-        Map<Material, Double>  scaledAmounts = new HashMap<>();
-
-        for (ItemStack raw : decomposed) {
-            int baseAmt = raw.getAmount() * item.getAmount(); // scale by stack size
-            double scaled = baseAmt * durabilityFactor;
-            int floored = (int) Math.floor(scaled);
-            if (floored > 0) aggregated.merge(raw.getType(), floored, Integer::sum);
-            // Track scaled values for probabilistic fallback
-            scaledAmounts.merge(raw.getType(), scaled, Double::sum);
+        Player pl = Bukkit.getPlayer(owner);
+        if (DeferredOutput.shouldDefer(table)) {
+            // Chunk unloaded — tally the output and place it when the table is next seen
+            DeferredOutput.deltaFor(table).add(item);
+            if (pl != null)
+                pl.sendMessage(ChatColor.GREEN + "Processed " + item.getAmount() + "x " + item.getType().name());
+            return;
         }
-
-        if (aggregated.isEmpty()) {
-            // Each material gets its own independent probability roll.
-            // e.g. 12% durability diamond pickaxe: diamonds scaled=0.36 → 36% chance of 1 diamond,
-            //                                       sticks scaled=0.24  → 24% chance of 1 stick.
-            for (Map.Entry<Material, Double> e : scaledAmounts.entrySet()) {
-                if (Math.random() < e.getValue()) {
-                    aggregated.put(e.getKey(), 1);
-                }
+        if (table == null) {
+            // No table to put it in — the whole output goes to overflow under the saved key
+            OutputDelta delta = new OutputDelta();
+            delta.add(item);
+            String key = getTableKey();
+            if (key != null) {
+                OverflowStorage.addItems(key, delta.toItems());
+            } else {
+                Bukkit.getLogger().warning("[RecycleTable] Dropped output of " + item.getAmount() + "x "
+                        + item.getType().name() + " for a session with no table.");
             }
-            // Absolute last resort (extremely low durability): give 1 of the most weighted material
-            if (aggregated.isEmpty() && !scaledAmounts.isEmpty()) {
-                Material best = Collections.max(scaledAmounts.entrySet(), Map.Entry.comparingByValue()).getKey();
-                aggregated.put(best, 1);
+            if (pl != null) {
+                pl.sendMessage(ChatColor.GREEN + "Processed " + item.getAmount() + "x " + item.getType().name());
+                if (key != null) pl.sendMessage(ChatColor.YELLOW + "Table not found — output saved to overflow storage.");
             }
+            return;
         }
+        List<ItemStack> overflowBatch = placeOutputs(OutputPlacer.of(table), item);
 
-        Player pl = Bukkit.getPlayer(owner);
-        Map<Material, Integer> overflow = new HashMap<>();
-
-        for (Map.Entry<Material, Integer> out : aggregated.entrySet()) {
-            int remaining = out.getValue();
-            for (int i = 0; i < 54 && remaining > 0; i++) {
-                if (!TableListener.isOutputSlot(i)) continue;
-                ItemStack slot = guiInventory.getItem(i);
-                if (slot == null || slot.getType() == Material.AIR) {
-                    int place = Math.min(remaining, out.getKey().getMaxStackSize());
-                    guiInventory.setItem(i, new ItemStack(out.getKey(), place));
-                    remaining -= place;
-                } else if (slot.getType() == out.getKey() && slot.getAmount() < slot.getMaxStackSize()) {
-                    int canAdd = Math.min(remaining, slot.getMaxStackSize() - slot.getAmount());
-                    slot.setAmount(slot.getAmount() + canAdd);
-                    guiInventory.setItem(i, slot);
-                    remaining -= canAdd;
+        // Single batched write — avoids repeated file saves for the same item
+        if (overflowBatch != null) {
+            OverflowStorage.addItems(getTableKey(), overflowBatch);
+            if (pl != null)
+                pl.sendMessage(ChatColor.YELLOW + "Output full — excess items saved to overflow storage.");
+        }
+
+        // ✅ Hook: adaptive learning analytics (auto-balances future complexity)
+        AnalyticsManager.logRecycle(item);
+
+        markTableDirty();
+        if (pl != null)
+            pl.sendMessage(ChatColor.GREEN + "Processed " + item.getAmount() + "x " + item.getType().name());
+    }
+
+    // ── Output scratch ────────────────────────────────────────────────────────
+    // Per-material tallies for the stack being processed, indexed by Material
+    // ordinal and reset after every use, so a completion doesn't build maps or box
+    // counts. Server thread only.
+
+    private static final Material[]  MATERIALS     = Material.values();
+    private static final int[]       scratchCounts = new int[MATERIALS.length];
+    private static final double[]    scratchScaled = new double[MATERIALS.length];
+    private static final boolean[]   scratchSeen   = new boolean[MATERIALS.length];
+    private static final int[]       scratchIds    = new int[MATERIALS.length];
+
+    /**
+     * Places a finished stack's raw materials and enchantment books in the output
+     * slots through {@code placer}. Returns what didn't fit, or null if everything
+     * did — for a stack without enchantments the only allocations are the stacks
+     * put into empty slots.
+     */
+    private static List<ItemStack> placeOutputs(OutputPlacer placer, ItemStack item) {
+        List<ItemStack> overflow = null;
+        int n = tally(item);
+        try {
+            for (int i = 0; i < n; i++) {
+                int id = scratchIds[i];
+                if (scratchCounts[id] <= 0) continue;
+                int left = placer.placeMaterial(MATERIALS[id], scratchCounts[id]);
+                if (left > 0) {
+                    if (overflow == null) overflow = new ArrayList<>();
+                    overflow.add(new ItemStack(MATERIALS[id], left));
                 }
             }
-
-            if (remaining > 0) overflow.put(out.getKey(), remaining);
+        } finally {
+            resetTally(n);
         }
+        for (ItemStack book : enchantBooks(item)) {
+            if (placer.place(book) == 0) continue;
+            if (overflow == null) overflow = new ArrayList<>();
+            overflow.add(book);
+        }
+        return overflow;
+    }
 
-        // Collect all overflow items into one list and write to disk a single time
-        List<ItemStack> overflowBatch = new ArrayList<>();
-        if (!overflow.isEmpty()) {
-            for (Map.Entry<Material, Integer> e : overflow.entrySet()) {
-                overflowBatch.add(new ItemStack(e.getKey(), e.getValue()));
+    /** Adds the raw materials a stack recycles into to {@code delta}. */
+    static void decomposeInto(ItemStack item, OutputDelta delta) {
+        int n = tally(item);
+        try {
+            for (int i = 0; i < n; i++) {
+                int id = scratchIds[i];
+                if (scratchCounts[id] > 0) delta.addMaterial(id, scratchCounts[id]);
             }
-            if (pl != null)
-                pl.sendMessage(ChatColor.YELLOW + "Output full — excess items saved to overflow storage.");
+        } finally {
+            resetTally(n);
         }
+    }
 
-        if (ConfigManager.enchantmentsEnabled()) {
-            // ── Vanilla enchantment books (level reduced by one tier) ────────
-            if (EnchantUtils.hasAnyEnchants(item)) {
-                Map<org.bukkit.enchantments.Enchantment, Integer> returned = EnchantUtils.getReturnedEnchantments(item);
-                List<ItemStack> books = EnchantUtils.generateEnchantmentBooks(returned);
-                for (ItemStack book : books) {
-                    boolean placed = false;
-                    for (int i = 27; i <= 53; i++) {
-                        if (!TableListener.isOutputSlot(i)) continue;
-                        ItemStack slot = guiInventory.getItem(i);
-                        if (slot == null || slot.getType() == Material.AIR) {
-                            guiInventory.setItem(i, book);
-                            placed = true;
-                            break;
-                        }
-                    }
-                    if (!placed) overflowBatch.add(book);
-                }
+    /**
+     * Tallies the raw materials a stack recycles into, scaled by stack size and
+     * durability, into the scratch arrays. Returns how many materials were touched;
+     * their ordinals are {@code scratchIds[0..n)}. Pair with {@link #resetTally}.
+     */
+    private static int tally(ItemStack item) {
+        RecipeManager.DecompositionMatrix matrix = RecipeManager.getDecomposition();
+        int row = item.getType().ordinal();
+        double durabilityFactor = CompatibilityUtils.getDurabilityFactor(item);
+        int n = 0;
+        boolean any = false;
+
+        for (int e = matrix.start(row); e < matrix.end(row); e++) {
+            int id = matrix.materialId(e);
+            if (!scratchSeen[id]) {
+                scratchSeen[id] = true;
+                scratchIds[n++] = id;
+            }
+            int baseAmt = matrix.amount(e) * item.getAmount(); // scale by stack size
+            double scaled = baseAmt * durabilityFactor;
+            int floored = (int) Math.floor(scaled);
+            if (floored > 0) {
+                scratchCounts[id] += floored;
+                any = true;
             }
+            // Track scaled values for probabilistic fallback
+            scratchScaled[id] += scaled;
+        }
 
-            // ── AdvancedEnchantments books (exact level, no reduction) ───────
-            if (AEIntegration.isLoaded()) {
-                List<ItemStack> aeBooks = AEIntegration.getEnchantmentBooks(item);
-                for (ItemStack book : aeBooks) {
-                    boolean placed = false;
-                    for (int i = 27; i <= 53; i++) {
-                        if (!TableListener.isOutputSlot(i)) continue;
-                        ItemStack slot = guiInventory.getItem(i);
-                        if (slot == null || slot.getType() == Material.AIR) {
-                            guiInventory.setItem(i, book);
-                            placed = true;
-                            break;
-                        }
-                    }
-                    if (!placed) overflowBatch.add(book);
+        if (!any) {
+            // Each material gets its own independent probability roll.
+            // e.g. 12% durability diamond pickaxe: diamonds scaled=0.36 → 36% chance of 1 diamond,
+            //                                       sticks scaled=0.24  → 24% chance of 1 stick.
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                int id = scratchIds[i];
+                if (Math.random() < scratchScaled[id]) {
+                    scratchCounts[id] = 1;
+                    any = true;
                 }
+                if (best < 0 || scratchScaled[id] > scratchScaled[best]) best = id;
             }
+            // Absolute last resort (extremely low durability): give 1 of the most weighted material
+            if (!any && best >= 0) scratchCounts[best] = 1;
         }
+        return n;
+    }
 
-        // Single batched write — avoids repeated file saves for the same item
-        if (!overflowBatch.isEmpty()) {
-            OverflowStorage.addItems(tableKey, overflowBatch);
+    private static void resetTally(int n) {
+        for (int i = 0; i < n; i++) {
+            int id = scratchIds[i];
+            scratchCounts[id] = 0;
+            scratchScaled[id] = 0.0;
+            scratchSeen[id] = false;
         }
+    }
 
-        // ✅ Hook: adaptive learning analytics (auto-balances future complexity)
-        AnalyticsManager.logRecycle(item);
+    static Material material(int id) { return MATERIALS[id]; }
+
+    /** Enchantment books returned for a stack, or an empty list if it has none or extraction is off. */
+    static List<ItemStack> enchantBooks(ItemStack item) {
+        // Both kinds of enchantment live in the item's meta — a plain stack has none
+        if (!item.hasItemMeta() || !ConfigManager.enchantmentsEnabled()) return Collections.emptyList();
+        List<ItemStack> books = new ArrayList<>();
+        // ── Vanilla enchantment books (level reduced by one tier) ────────
+        if (EnchantUtils.hasAnyEnchants(item)) {
+            Map<org.bukkit.enchantments.Enchantment, Integer> returned = EnchantUtils.getReturnedEnchantments(item);
+            books.addAll(EnchantUtils.generateEnchantmentBooks(returned));
+        }
+        // ── AdvancedEnchantments books (exact level, no reduction) ───────
+        if (AEIntegration.isLoaded()) {
+            books.addAll(AEIntegration.getEnchantmentBooks(item));
+        }
+        return books;
+    }
 
-        if (pl != null)
-            pl.sendMessage(ChatColor.GREEN + "Processed " + item.getAmount() + "x " + item.getType().name());
+    /** Clears the processed item's input slot and flags the table for saving. */
+    private void clearProcessedInputSlot(ItemStack item) {
+        // A held-back delta already lists the item and clears its slot when applied
+        if (table == null || DeferredOutput.shouldDefer(table)) return;
+        if (clearInputSlot(table.getSlots(), item)) markTableDirty();
+    }
+
+    /**
+     * Takes {@code part}'s amount off the first input slot of its type holding more
+     * than that, for a stack that has only partly been processed. Returns true if a
+     * slot was reduced.
+     */
+    static boolean reduceInputSlot(TableSlots inv, ItemStack part) {
+        for (int i = 0; i < 54; i++) {
+            if (!TableListener.isInputSlot(i) || TableListener.isControlSlot(i)) continue;
+            ItemStack slot = inv.getItem(i);
+            if (slot != null && slot.getType() == part.getType() && slot.getAmount() > part.getAmount()) {
+                slot.setAmount(slot.getAmount() - part.getAmount());
+                inv.setItem(i, slot);
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * Removes the first input slot that exactly matches the processed item (type + amount).
      * Falls back to a type-only match in case amounts drifted, so slots don't silently linger.
+     * Returns true if a slot was cleared.
      */
-    private void clearProcessedInputSlot(ItemStack item) {
+    static boolean clearInputSlot(TableSlots inv, ItemStack item) {
         // First pass — exact match
         for (int i = 0; i < 54; i++) {
             if (!TableListener.isInputSlot(i) || TableListener.isControlSlot(i)) continue;
-            ItemStack slot = guiInventory.getItem(i);
+            ItemStack slot = inv.getItem(i);
             if (slot != null && slot.getType() == item.getType() && slot.getAmount() == item.getAmount()) {
-                guiInventory.setItem(i, null);
-                return;
+                inv.setItem(i, null);
+                return true;
             }
         }
         // Second pass — type-only fallback
         for (int i = 0; i < 54; i++) {
             if (!TableListener.isInputSlot(i) || TableListener.isControlSlot(i)) continue;
-            ItemStack slot = guiInventory.getItem(i);
+            ItemStack slot = inv.getItem(i);
             if (slot != null && slot.getType() == item.getType()) {
-                guiInventory.setItem(i, null);
-                return;
+                inv.setItem(i, null);
+                return true;
             }
         }
+        return false;
     }
 
     private void finish() {
         active = false;
-        currentTask = null;
+        SessionManager.unregisterSession(this);
+        ProcessingScheduler.untrack(this);
+        completionTimer = null;
         currentItem = null;
-        timeLeftTicks = 0;
+        lastActiveTime = System.currentTimeMillis();
         progress = 1.0;
-        HologramManager.refreshIdle(tableKey);
+        HologramManager.markDirty(table);
         // Safety net: clear any input slots that weren't cleaned up during processing
-        for (int i = 0; i < 54; i++) {
-            if (TableListener.isInputSlot(i) && !TableListener.isControlSlot(i)) {
-                guiInventory.setItem(i, null);
+        TableSlots slots = table != null ? table.getSlots() : null;
+        if (DeferredOutput.shouldDefer(table)) {
+            DeferredOutput.deltaFor(table).clearInputs = true;
+        } else if (slots != null) {
+            for (int i = 0; i < 54; i++) {
+                if (TableListener.isInputSlot(i) && !TableListener.isControlSlot(i)) {
+                    slots.setItem(i, null);
+                }
             }
+            markTableDirty();
         }
         // Restore the Recycle button for anyone currently viewing the GUI
-        TableListener.refreshRecycleButton(guiInventory, false);
-        for (org.bukkit.entity.HumanEntity viewer : new ArrayList<>(guiInventory.getViewers())) {
-            if (viewer instanceof Player) ((Player) viewer).updateInventory();
+        if (slots != null && slots.isLive()) {
+            TableListener.refreshRecycleButton(slots.getInventory(), false);
+            for (org.bukkit.entity.HumanEntity viewer : new ArrayList<>(slots.getInventory().getViewers())) {
+                if (viewer instanceof Player) ((Player) viewer).updateInventory();
+            }
         }
         Player pl = Bukkit.getPlayer(owner);
         if (pl != null)
             pl.sendMessage(ChatColor.GREEN + "Recycling session completed.");
     }
-}
\ No newline at end of file
+
+    /** Flags the attached table's contents for the next autosave. */
+    private void markTableDirty() {
+        if (table != null) TablePersistence.markDirty(table);
+    }
+}
@@ -14,30 +14,81 @@ public class RecycleTable extends JavaPlugin {
 
         // Load config & managers
         ConfigManager.load(this);
+        PersistenceService.initialize();
         RecipeManager.initialize();
+        ComplexityCalculator.rebuild();
+        HologramManager.initialize();
+        // Tables first — overflow and sessions attach to their records
+        TablePersistence.loadPlacedTables(this);
         OverflowStorage.initialize(getDataFolder());
         AnalyticsManager.initialize(this);
         AEIntegration.initialize();
         RecipeRegistry.registerAll(this);
+        ProcessingScheduler.initialize(this);
+        SessionManager.initialize(this);
 
         // Register listeners
         getServer().getPluginManager().registerEvents(new TableListener(), this);
+        getServer().getPluginManager().registerEvents(new TableEventDispatcher(), this);
         getServer().getPluginManager().registerEvents(new HopperListener(), this);
         getServer().getPluginManager().registerEvents(new PlaceListener(), this);
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(), this);
-        getServer().getPluginManager().registerEvents(new OverflowListener(), this);
+        getServer().getPluginManager().registerEvents(new ChunkListener(), this);
 
-        // Command: /recycletable reload
+        // Command: /recycletable <reload|stats>
         if (getCommand("recycletable") != null) {
             getCommand("recycletable").setExecutor((sender, cmd, label, args) -> {
-                if (args.length == 0 || !args[0].equalsIgnoreCase("reload")) {
-                    sender.sendMessage(ChatColor.YELLOW + "Usage: /recycletable reload");
+                if (args.length == 0) {
+                    sender.sendMessage(ChatColor.YELLOW + "Usage: /recycletable <reload|stats>");
+                    return true;
+                }
+                if (args[0].equalsIgnoreCase("reload")) {
+                    reloadConfig();
+                    ConfigManager.load(this);
+                    PersistenceService.initialize();
+                    RecipeManager.initialize();
+                    ComplexityCalculator.rebuild();
+                    HologramManager.initialize();
+                    sender.sendMessage(ChatColor.GREEN + "RecycleTable config reloaded.");
+                    return true;
+                }
+                if (args[0].equalsIgnoreCase("stats")) {
+                    sender.sendMessage(ChatColor.AQUA + "RecycleTable scheduler:");
+                    sender.sendMessage(ChatColor.GRAY + "  Pending completions: " + ChatColor.WHITE
+                            + ProcessingScheduler.getQueueDepth()
+                            + ChatColor.GRAY + " (" + ProcessingScheduler.getRunningCount() + " running sessions)");
+                    sender.sendMessage(ChatColor.GRAY + "  Tick cost: " + ChatColor.WHITE
+                            + formatMicros(ProcessingScheduler.getAverageTickNanos()) + " avg, "
+                            + formatMicros(ProcessingScheduler.getMaxTickNanos()) + " max");
+                    sender.sendMessage(ChatColor.GRAY + "  Items completed: " + ChatColor.WHITE
+                            + ProcessingScheduler.getCompletions());
+                    sender.sendMessage(ChatColor.GRAY + "  Offline catch-up: " + ChatColor.WHITE
+                            + OfflineCatchUp.getAppliedCount() + ChatColor.GRAY + " tables applied, " + ChatColor.WHITE
+                            + OfflineCatchUp.getPendingCount() + ChatColor.GRAY + " pending, " + ChatColor.WHITE
+                            + DeferredOutput.getDeferredCount() + ChatColor.GRAY + " held for unloaded chunks");
+                    sender.sendMessage(ChatColor.GRAY + "  Hologram backend: " + ChatColor.WHITE
+                            + HologramManager.getBackendName());
+                    sender.sendMessage(ChatColor.GRAY + "  Hologram renders: " + ChatColor.WHITE
+                            + HologramManager.getRenderedCount() + ChatColor.GRAY + " drawn, " + ChatColor.WHITE
+                            + HologramManager.getUnchangedCount() + ChatColor.GRAY + " unchanged, " + ChatColor.WHITE
+                            + HologramManager.getSkippedCount() + ChatColor.GRAY + " skipped, " + ChatColor.WHITE
+                            + HologramManager.getBacklog() + ChatColor.GRAY + " queued ("
+                            + HologramManager.getCarriedOverTicks() + " over-budget ticks)");
+                    sender.sendMessage(ChatColor.GRAY + "  Table regions: " + ChatColor.WHITE
+                            + TablePersistence.getLoadedRegionCount() + ChatColor.GRAY + " loaded, " + ChatColor.WHITE
+                            + TablePersistence.getDirtyRegionCount() + ChatColor.GRAY + " waiting to save");
+                    sender.sendMessage(ChatColor.AQUA + "RecycleTable events:");
+                    for (TableEventDispatcher.Route route : TableEventDispatcher.Route.values()) {
+                        long calls = TableEventDispatcher.getCalls(route);
+                        if (calls == 0) continue;
+                        sender.sendMessage(ChatColor.GRAY + "  " + route.getLabel() + ": " + ChatColor.WHITE
+                                + calls + ChatColor.GRAY + " calls, " + ChatColor.WHITE
+                                + formatMicros(TableEventDispatcher.getAverageNanos(route)) + " avg, "
+                                + formatMicros(TableEventDispatcher.getMaxNanos(route)) + " max");
+                    }
                     return true;
                 }
-                reloadConfig();
-                ConfigManager.load(this);
-                RecipeManager.initialize();
-                sender.sendMessage(ChatColor.GREEN + "RecycleTable config reloaded.");
+                sender.sendMessage(ChatColor.YELLOW + "Usage: /recycletable <reload|stats>");
                 return true;
             });
         }
@@ -63,30 +114,38 @@ public class RecycleTable extends JavaPlugin {
         final long ONE_HOUR_TICKS = 72000L;
         getServer().getScheduler().runTaskTimer(this, () -> {
             for (org.bukkit.entity.Player p : getServer().getOnlinePlayers()) {
-                String tableKey = TablePersistence.getTableKeyForOwner(p.getUniqueId());
-                if (tableKey == null) continue;
-                if (!OverflowStorage.hasOverflow(tableKey)) continue;
-                int total = OverflowStorage.overflowItemTotal(tableKey);
+                int total = 0;
+                for (TableKey key : TablePersistence.tablesOwnedBy(p.getUniqueId())) {
+                    total += OverflowStorage.overflowItemTotal(key);
+                }
+                if (total == 0) continue;
                 p.sendMessage(org.bukkit.ChatColor.GOLD + "⚠ Your Recycling Table is full! "
                         + org.bukkit.ChatColor.YELLOW + total + " item(s) are sitting in overflow storage. "
                         + org.bukkit.ChatColor.GRAY + "Open your table and take items from the output to free up space.");
             }
         }, ONE_HOUR_TICKS, ONE_HOUR_TICKS);
 
-        // Load placed tables
-        TablePersistence.loadPlacedTables(this);
-
         getLogger().info("RecycleTable enabled. Recipes indexed: " + RecipeManager.getRecipeCount());
     }
 
     @Override
     public void onDisable() {
+        ProcessingScheduler.shutdown();
+        SessionManager.shutdown();
+        OfflineCatchUp.shutdown();
+        DeferredOutput.materializeAll();
         HologramManager.removeAll();
         AnalyticsManager.shutdown();
         if (storage != null) storage.saveSessions(SessionManager.getAllSessions());
         TablePersistence.savePlacedTables(this);
-        OverflowStorage.save();
+        OverflowStorage.shutdown();
+        // Last — waits for the queued session and analytics writes
+        PersistenceService.shutdown();
     }
 
     public static RecycleTable getInstance() { return instance; }
+
+    private static String formatMicros(double nanos) {
+        return String.format(java.util.Locale.ROOT, "%.1fµs", nanos / 1000.0);
+    }
 }
\ No newline at end of file
@@ -1,23 +1,104 @@
 package me.mizfit.recycletable;
 
 
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Registry of live recycling sessions, indexed by table. A table runs at most one
+ * session at a time, and a player with several tables may have one on each. A
+ * session attached to a placed table is also reachable from that table's
+ * {@link TableRecord}.
+ *
+ * Sessions leave the registry when they finish or are stopped; anything left
+ * idle longer than processing.session-expire-ms is swept as a safety net.
+ */
 public class SessionManager {
-    private static final Map<UUID, RecycleSession> sessions = new HashMap<>();
-    public static void registerSession(UUID id, RecycleSession s) { sessions.put(id, s); }
-    public static RecycleSession getSession(UUID id) { return sessions.get(id); }
-    public static Map<UUID, RecycleSession> getAllSessions() { return new HashMap<>(sessions); }
-
-    /** Finds a session whose tableKey matches the given key, or null if none exists. */
-    public static RecycleSession getSessionByTableKey(String tableKey) {
-        if (tableKey == null) return null;
+    private static final long SWEEP_INTERVAL_TICKS = 20L * 60;
+
+    // Table position → session
+    private static final Map<TableKey, RecycleSession> sessions = new HashMap<>();
+    // Sessions whose saved table key couldn't be parsed (legacy, or world unknown), by owner
+    private static final Map<UUID, RecycleSession> unkeyed = new HashMap<>();
+
+    private static BukkitTask sweepTask;
+
+    public static void initialize(JavaPlugin plugin) {
+        if (sweepTask != null) sweepTask.cancel();
+        sweepTask = plugin.getServer().getScheduler().runTaskTimer(plugin,
+                SessionManager::expireIdleSessions, SWEEP_INTERVAL_TICKS, SWEEP_INTERVAL_TICKS);
+    }
+
+    public static void shutdown() {
+        if (sweepTask != null) sweepTask.cancel();
+        sweepTask = null;
+    }
+
+    /**
+     * Registers a session for its table. Set the session's table first.
+     * A previous session on the same table is stopped, so it can't keep running
+     * without a table to put its output in.
+     */
+    public static void registerSession(RecycleSession s) {
+        TableKey key = s.getKey();
+        RecycleSession previous = key != null ? sessions.put(key, s) : unkeyed.put(s.getOwner(), s);
+        // stop() unregisters too; the put above already replaced it, so that only detaches it
+        if (previous != null && previous != s) previous.stop();
+        TableRecord table = s.getTable();
+        if (table != null) table.setSession(s);
+    }
+
+    /** Removes a session from the registry and its table. No-op if it was already replaced. */
+    public static void unregisterSession(RecycleSession s) {
+        if (s == null) return;
+        TableKey key = s.getKey();
+        if (key != null) sessions.remove(key, s);
+        else unkeyed.remove(s.getOwner(), s);
+        TableRecord table = s.getTable();
+        if (table != null && table.getSession() == s) table.setSession(null);
+    }
+
+    /**
+     * Links a session restored before its table was loaded (its region wasn't read
+     * yet) to the table, now that it is registered.
+     */
+    static void attachTable(TableRecord table) {
+        if (table.getSession() != null) return;
+        RecycleSession s = sessions.get(table.getKey());
+        if (s != null && s.getTable() == null) {
+            s.setTable(table);
+            table.setSession(s);
+        }
+    }
+
+    /** Every registered session this player owns, across all of their tables. */
+    public static List<RecycleSession> getSessionsOf(UUID owner) {
+        List<RecycleSession> owned = new ArrayList<>();
         for (RecycleSession s : sessions.values()) {
-            if (tableKey.equals(s.getTableKey())) return s;
+            if (s.getOwner().equals(owner)) owned.add(s);
         }
-        return null;
+        RecycleSession legacy = unkeyed.get(owner);
+        if (legacy != null) owned.add(legacy);
+        return owned;
     }
-}
 
+    public static List<RecycleSession> getAllSessions() {
+        List<RecycleSession> all = new ArrayList<>(sessions.values());
+        all.addAll(unkeyed.values());
+        return all;
+    }
+
+    /** Drops sessions that have sat inactive for longer than processing.session-expire-ms. */
+    private static void expireIdleSessions() {
+        long cutoff = System.currentTimeMillis() - ConfigManager.getSessionExpireMs();
+        for (RecycleSession s : getAllSessions()) {
+            if (!s.isActive() && s.getLastActiveTime() < cutoff) unregisterSession(s);
+        }
+    }
+}
@@ -4,11 +4,9 @@ import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.*;
 
 /**
@@ -21,65 +19,74 @@ public class SessionStorage {
 
     public SessionStorage(File dataFolder) {
         this.file = new File(dataFolder, "sessions.yml");
-        this.cfg = YamlConfiguration.loadConfiguration(file);
+        this.cfg = PersistenceService.loadYaml(file);
     }
 
     /**
      * Save all active sessions to sessions.yml, including queue items and timestamps.
+     * Values are copied here; the file is written on the I/O thread.
      */
-    public void saveSessions(Map<UUID, RecycleSession> sessions) {
-        cfg.set("sessions", null);
-
-        for (Map.Entry<UUID, RecycleSession> entry : sessions.entrySet()) {
-            UUID id = entry.getKey();
-            RecycleSession s = entry.getValue();
-
-            String base = "sessions." + id;
-            cfg.set(base + ".active", s.isActive());
-            cfg.set(base + ".timeLeft", s.getTimeLeft());
-            cfg.set(base + ".progress", s.getProgress());
-            cfg.set(base + ".lastActiveTime", s.getLastActiveTime());
-            cfg.set(base + ".items", s.serializeItems());
-            if (s.getTableKey() != null) cfg.set(base + ".tableKey", s.getTableKey());
+    public void saveSessions(List<RecycleSession> sessions) {
+        final YamlConfiguration out = new YamlConfiguration();
+
+        // Numbered entries: one owner may have a session on each of their tables
+        int n = 0;
+        for (RecycleSession s : sessions) {
+            String base = "sessions." + n++;
+            out.set(base + ".owner", s.getOwner().toString());
+            out.set(base + ".active", s.isActive());
+            out.set(base + ".timeLeft", s.getTimeLeft());
+            out.set(base + ".progress", s.getProgress());
+            out.set(base + ".lastActiveTime", s.getLastActiveTime());
+            List<ItemStack> items = new ArrayList<>();
+            for (ItemStack item : s.serializeItems()) items.add(item.clone());
+            out.set(base + ".items", items);
+            if (s.getCurrentItem() != null) out.set(base + ".current", s.getCurrentItem().clone());
+            if (s.getTableKey() != null) out.set(base + ".tableKey", s.getTableKey());
         }
 
-        try {
-            cfg.save(file);
-        } catch (IOException ex) {
-            ex.printStackTrace();
-        }
+        // Nothing touches this copy after hand-off, so the I/O thread can serialize it
+        PersistenceService.save(file, () -> out);
     }
 
     /**
      * Loads all saved sessions and rebuilds them with queue + offline time compensation.
+     * Returns the sessions still running afterwards.
      */
-    public Map<UUID, RecycleSession> loadSessions() {
-        Map<UUID, RecycleSession> map = new HashMap<>();
-        if (!cfg.contains("sessions")) return map;
+    public List<RecycleSession> loadSessions() {
+        List<RecycleSession> loaded = new ArrayList<>();
+        if (!cfg.contains("sessions")) return loaded;
 
         for (String key : cfg.getConfigurationSection("sessions").getKeys(false)) {
             try {
-                UUID id = UUID.fromString(key);
+                // Older files keyed each owner's single session by their UUID
+                String owner = cfg.getString("sessions." + key + ".owner");
+                UUID id = UUID.fromString(owner != null ? owner : key);
                 boolean active = cfg.getBoolean("sessions." + key + ".active");
                 long lastActiveTime = cfg.getLong("sessions." + key + ".lastActiveTime", System.currentTimeMillis());
                 List<ItemStack> queued = (List<ItemStack>) cfg.get("sessions." + key + ".items");
 
+                // Sessions saved while stopped/idle only survive until processing.session-expire-ms
+                if (!active && System.currentTimeMillis() - lastActiveTime > ConfigManager.getSessionExpireMs()) continue;
+
                 long offlineSeconds = (System.currentTimeMillis() - lastActiveTime) / 1000;
                 if (offlineSeconds < 0) offlineSeconds = 0;
 
-                // Create a temporary GUI for restoration
-                Inventory tempInv = Bukkit.createInventory(null, 54, TableListener.GUI_TITLE);
-                RecycleSession session = new RecycleSession(id, queued, tempInv, lastActiveTime);
+                RecycleSession session = new RecycleSession(id, queued, lastActiveTime);
+                // The item that was mid-way through, with the time it had left (saved in ticks)
+                ItemStack current = cfg.getItemStack("sessions." + key + ".current");
+                if (current != null) session.restoreCurrent(current, cfg.getLong("sessions." + key + ".timeLeft") / 20L);
 
                 // Restore table key so hologram and overflow work after restart
                 String tableKey = cfg.getString("sessions." + key + ".tableKey");
                 if (tableKey != null) session.setTableKey(tableKey);
 
-                // Start with offline compensation
-                session.start(RecycleTable.getInstance(), offlineSeconds);
-
-                SessionManager.registerSession(id, session);
-                map.put(id, session);
+                // Register before starting — a session that completes during offline
+                // compensation unregisters itself on finish. Finished entries are only
+                // tallied here; OfflineCatchUp places their output over the next ticks.
+                SessionManager.registerSession(session);
+                session.start(offlineSeconds);
+                if (session.isActive()) loaded.add(session);
 
                 // If player is online, send feedback
                 Player p = Bukkit.getPlayer(id);
@@ -94,6 +101,6 @@ public class SessionStorage {
                 ex.printStackTrace();
             }
         }
-        return map;
+        return loaded;
     }
 }
@@ -0,0 +1,136 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+
+/**
+ * The single listener for Recycling Table GUI events.
+ *
+ * Each click, drag or close resolves its table once (via {@link TableHolder}),
+ * picks a route from the slot layout and hands the record to the logic for that
+ * route: input lock, control buttons, output/overflow repopulation, and so on.
+ * Events on any other inventory return after one instanceof check. Output held
+ * back by {@link DeferredOutput} is put in before any route sees the slots.
+ *
+ * Clicks and drags that go through mark the table dirty for the next autosave.
+ *
+ * Every route keeps a call count and its total / worst cost so /recycletable
+ * stats can show which path is expensive under load. HopperListener reports its
+ * transfers here too.
+ */
+public class TableEventDispatcher implements Listener {
+
+    /** Paths an event can take once its table is known. */
+    public enum Route {
+        PLAYER_INVENTORY("click/player-inv"),
+        INPUT("click/input"),
+        OUTPUT("click/output"),
+        CONTROL("click/button"),
+        DIVIDER("click/divider"),
+        DRAG("drag"),
+        CLOSE("close"),
+        HOPPER("hopper");
+
+        private final String label;
+        Route(String label) { this.label = label; }
+        public String getLabel() { return label; }
+    }
+
+    private static final Route[] ROUTES = Route.values();
+    private static final long[] calls      = new long[ROUTES.length];
+    private static final long[] totalNanos = new long[ROUTES.length];
+    private static final long[] maxNanos   = new long[ROUTES.length];
+
+    @EventHandler
+    public void onInventoryOpen(InventoryOpenEvent e) {
+        TableRecord table = TableHolder.tableOf(e.getInventory());
+        if (table != null) DeferredOutput.materialize(table);
+    }
+
+    @EventHandler
+    public void onInventoryClick(InventoryClickEvent e) {
+        TableRecord table = TableHolder.tableOf(e.getInventory());
+        if (table == null) return;
+
+        long start = System.nanoTime();
+        DeferredOutput.materialize(table);
+        int raw = e.getRawSlot();
+        Route route;
+        if (raw < 0 || raw >= 54) {
+            route = Route.PLAYER_INVENTORY;
+            TableListener.onPlayerInventoryClick(e, table);
+        } else if (TableListener.isControlSlot(raw)) {
+            route = Route.CONTROL;
+            TableListener.onControlClick(e, table);
+        } else if (TableListener.isDividerSlot(raw)) {
+            // Glass panes — never movable
+            route = Route.DIVIDER;
+            e.setCancelled(true);
+        } else if (TableListener.isInputSlot(raw)) {
+            route = Route.INPUT;
+            TableListener.onInputClick(e, table);
+        } else {
+            // Taking from the output frees space — let overflow fill it
+            route = Route.OUTPUT;
+            OverflowStorage.tryRepopulate(table, (Player) e.getWhoClicked());
+        }
+        // Plain clicks in the player's own inventory can't change the table's contents
+        if (!e.isCancelled() && (route != Route.PLAYER_INVENTORY
+                || e.getClick().isShiftClick() || e.getClick() == ClickType.DOUBLE_CLICK)) {
+            TablePersistence.markDirty(table);
+            OutputPlacer.invalidate(table);
+        }
+        record(route, System.nanoTime() - start);
+    }
+
+    @EventHandler
+    public void onInventoryDrag(InventoryDragEvent e) {
+        TableRecord table = TableHolder.tableOf(e.getInventory());
+        if (table == null) return;
+
+        long start = System.nanoTime();
+        DeferredOutput.materialize(table);
+        TableListener.onDrag(e);
+        if (!e.isCancelled()) {
+            TablePersistence.markDirty(table);
+            OutputPlacer.invalidate(table);
+        }
+        record(Route.DRAG, System.nanoTime() - start);
+    }
+
+    @EventHandler
+    public void onInventoryClose(InventoryCloseEvent e) {
+        TableRecord table = TableHolder.tableOf(e.getInventory());
+        if (table == null) return;
+
+        long start = System.nanoTime();
+        OverflowStorage.tryRepopulate(table, (Player) e.getPlayer());
+        // Last viewer gone — the contents go back to the plain slot array
+        table.getSlots().release(e.getPlayer());
+        record(Route.CLOSE, System.nanoTime() - start);
+    }
+
+    // ── Stats ─────────────────────────────────────────────────────────────────
+
+    /** Adds one handled event of the given route and its cost. */
+    static void record(Route route, long nanos) {
+        int i = route.ordinal();
+        calls[i]++;
+        totalNanos[i] += nanos;
+        if (nanos > maxNanos[i]) maxNanos[i] = nanos;
+    }
+
+    public static long getCalls(Route route) { return calls[route.ordinal()]; }
+    public static long getMaxNanos(Route route) { return maxNanos[route.ordinal()]; }
+
+    public static double getAverageNanos(Route route) {
+        long n = calls[route.ordinal()];
+        return n == 0 ? 0.0 : totalNanos[route.ordinal()] / (double) n;
+    }
+}
@@ -0,0 +1,28 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+
+/**
+ * Holder of every Recycling Table GUI inventory. Lets event handlers recognise a
+ * table inventory with one instanceof check and reach its {@link TableRecord}
+ * directly, instead of comparing view titles and looking the inventory up.
+ */
+public class TableHolder implements InventoryHolder {
+    private final TableRecord table;
+
+    TableHolder(TableRecord table) {
+        this.table = table;
+    }
+
+    public TableRecord getTable() { return table; }
+
+    @Override
+    public Inventory getInventory() { return table.getSlots().getInventory(); }
+
+    /** Returns the table behind this inventory, or null if it isn't a table GUI. */
+    public static TableRecord tableOf(Inventory inv) {
+        if (inv == null) return null;
+        return inv.getHolder() instanceof TableHolder ? ((TableHolder) inv.getHolder()).getTable() : null;
+    }
+}
@@ -0,0 +1,98 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.UUID;
+
+/**
+ * Identity of a placed table: the world's UUID plus the block position packed
+ * into one long (x: 26 bits, z: 26 bits, y: 12 bits, all signed — the same
+ * layout vanilla uses for BlockPos).
+ *
+ * Used as the key of every in-memory table index. Building one from a block
+ * costs a single small object and no string work, and it is unaffected by
+ * world renames. The legacy "world:x:y:z" form only appears in saved files —
+ * see {@link TablePersistence#legacyKey} / {@link TablePersistence#parseKey}.
+ */
+public final class TableKey {
+    private final UUID world;
+    private final long packed;
+
+    public TableKey(UUID world, int x, int y, int z) {
+        if (world == null) throw new IllegalArgumentException("Table key needs a world");
+        this.world = world;
+        this.packed = pack(x, y, z);
+    }
+
+    /** Rebuilds a key from {@link #getPacked()}, e.g. when reading a journal record. */
+    TableKey(UUID world, long packed) {
+        if (world == null) throw new IllegalArgumentException("Table key needs a world");
+        this.world = world;
+        this.packed = packed;
+    }
+
+    public static TableKey of(Block b) {
+        return new TableKey(b.getWorld().getUID(), b.getX(), b.getY(), b.getZ());
+    }
+
+    public static TableKey of(Location loc) {
+        if (loc == null || loc.getWorld() == null) {
+            throw new IllegalArgumentException("Tried to generate key for null or invalid location!");
+        }
+        return new TableKey(loc.getWorld().getUID(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    }
+
+    /** Parses the {@link #toString()} form ("worldUID:x:y:z"), or returns null if malformed. */
+    static TableKey parse(String s) {
+        String[] parts = s.split(":");
+        if (parts.length != 4) return null;
+        try {
+            return new TableKey(UUID.fromString(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    public UUID getWorld() { return world; }
+    public long getPacked() { return packed; }
+
+    // Shift left then arithmetic-shift right to sign-extend each field
+    public int getX() { return (int) (packed >> 38); }
+    public int getY() { return (int) (packed << 52 >> 52); }
+    public int getZ() { return (int) (packed << 26 >> 38); }
+
+    public int getChunkX() { return getX() >> 4; }
+    public int getChunkZ() { return getZ() >> 4; }
+
+    /** Block location of this table, or null if its world isn't loaded. */
+    public Location toLocation() {
+        World w = Bukkit.getWorld(world);
+        return w == null ? null : new Location(w, getX(), getY(), getZ());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TableKey)) return false;
+        TableKey other = (TableKey) o;
+        return packed == other.packed && world.equals(other.world);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * world.hashCode() + Long.hashCode(packed);
+    }
+
+    @Override
+    public String toString() {
+        return world + ":" + getX() + ":" + getY() + ":" + getZ();
+    }
+}
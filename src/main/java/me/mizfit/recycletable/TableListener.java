@@ -10,7 +10,6 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.inventory.InventoryClickEvent;
-import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.Inventory;
@@ -27,148 +26,124 @@ public class TableListener implements Listener {
     public static final int RECYCLE_BUTTON_SLOT  = 13; // row 1, col 4
     public static final int HOLOGRAM_BUTTON_SLOT = 40; // row 4, col 4
 
-    // Tracks all currently open recycling table inventories for reliable identification
-    private static final Set<Inventory> activeInventories = new HashSet<>();
-
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = false)
     public void onUse(PlayerInteractEvent e) {
         if (e.getAction() != Action.RIGHT_CLICK_BLOCK) return;
 
         Block b = e.getClickedBlock();
-        if (b == null || b.getType() != Material.CRAFTING_TABLE || !TablePersistence.isRecyclingTableBlock(b)) return;
+        if (b == null || b.getType() != Material.CRAFTING_TABLE) return;
+        TableRecord table = TablePersistence.getTable(b);
+        if (table == null) return;
 
         // Respect any cancellation from protection plugins that ran before us
         if (e.isCancelled()) return;
 
         Player p = e.getPlayer();
-        String tableKey = HologramManager.keyFor(b.getLocation());
 
         // Check ownership / protection plugin access
-        if (!TablePersistence.isOwner(b, p) && !ProtectionChecker.isTrusted(p, b.getLocation())) {
-            UUID ownerUuid = TablePersistence.getOwner(tableKey);
+        if (!table.isOwnedBy(p) && !ProtectionChecker.isTrusted(p, b.getLocation())) {
+            UUID ownerUuid = table.getOwner();
             String ownerName = ownerUuid != null ? Bukkit.getOfflinePlayer(ownerUuid).getName() : null;
             if (ownerName == null) ownerName = "someone else";
             p.sendMessage(ChatColor.RED + "This Recycling Table belongs to " + ownerName + ".");
             e.setCancelled(true);
             return;
         }
-        Inventory inv = TablePersistence.getInventoryForBlock(b);
-        if (inv == null) inv = TablePersistence.createInventoryForBlock(b);
+        DeferredOutput.materialize(table);
+        Inventory inv = table.getSlots().open();
 
         // Always restore the full divider column (buttons + glass panes) so it can't be corrupted
-        RecycleSession openSess = SessionManager.getSessionByTableKey(tableKey);
+        RecycleSession openSess = table.getSession();
         boolean processing = openSess != null && openSess.isActive();
         inv.setItem(RECYCLE_BUTTON_SLOT, processing ? makeStopButton() : makeRecycleButton());
-        inv.setItem(HOLOGRAM_BUTTON_SLOT, makeHologramButton(HologramManager.getMode(tableKey)));
+        inv.setItem(HOLOGRAM_BUTTON_SLOT, makeHologramButton(table.getHologramMode()));
         ItemStack pane = UiHelpers.makeButton(Material.GRAY_STAINED_GLASS_PANE, " ", Collections.emptyList());
         for (int i = 0; i < 54; i++) {
             if (isDividerSlot(i) && !isControlSlot(i)) inv.setItem(i, pane.clone());
         }
 
-        activeInventories.add(inv);
         p.openInventory(inv);
         e.setCancelled(true);
+        // Another plugin may have cancelled the open — don't leave the contents in the Inventory
+        if (inv.getViewers().isEmpty()) table.getSlots().release(null);
 
         // Notify the player if overflow items are waiting to be returned
-        if (OverflowStorage.hasOverflow(tableKey)) {
-            int stacks = OverflowStorage.overflowStackCount(tableKey);
+        if (OverflowStorage.hasOverflow(table)) {
+            int stacks = OverflowStorage.overflowStackCount(table);
             p.sendMessage(ChatColor.GOLD + "⚠ " + stacks + " overflow stack(s) are waiting — "
                     + "take items from the output area to retrieve them.");
         }
     }
 
-    @EventHandler
-    public void onInventoryClick(InventoryClickEvent e) {
-        if (!GUI_TITLE.equals(e.getView().getTitle())) return;
-
-        int raw = e.getRawSlot();
+    // ── GUI handlers (routed by TableEventDispatcher) ────────────────────────
 
+    /** Click in the player's own inventory while a table GUI is open. */
+    static void onPlayerInventoryClick(InventoryClickEvent e, TableRecord table) {
         // Block shift-clicks from the player's own inventory into the table while processing
-        if (raw < 0 || raw >= 54) {
-            if (e.getClick().isShiftClick()) {
-                String tk = TablePersistence.getKeyForInventory(e.getInventory());
-                RecycleSession sess = SessionManager.getSessionByTableKey(tk);
-                if (sess != null && sess.isActive()) e.setCancelled(true);
-            }
-            return;
-        }
+        if (e.getClick().isShiftClick() && isProcessing(table)) e.setCancelled(true);
+    }
 
+    /** Click on one of the input slots. */
+    static void onInputClick(InventoryClickEvent e, TableRecord table) {
         // Lock input slots while this table is actively processing
-        if (isInputSlot(raw) && !isControlSlot(raw)) {
-            String tk = TablePersistence.getKeyForInventory(e.getInventory());
-            RecycleSession sess = SessionManager.getSessionByTableKey(tk);
-            if (sess != null && sess.isActive()) {
-                e.setCancelled(true);
-                return;
-            }
-        }
+        if (isProcessing(table)) e.setCancelled(true);
+    }
 
-        // Cancel all clicks on the divider column (glass panes + buttons)
-        if (isDividerSlot(raw)) e.setCancelled(true);
+    /** Click on the Recycle/Stop or hologram button. */
+    static void onControlClick(InventoryClickEvent e, TableRecord table) {
+        e.setCancelled(true);
 
         // Hologram cycle button
-        if (raw == HOLOGRAM_BUTTON_SLOT) {
-            e.setCancelled(true);
-            Inventory inv = e.getInventory();
-            String tableKey = TablePersistence.getKeyForInventory(inv);
-            if (tableKey == null) return;
-
-            HologramManager.cycleMode(tableKey);
-            HologramManager.refreshIdle(tableKey); // show new state immediately
-            inv.setItem(HOLOGRAM_BUTTON_SLOT, makeHologramButton(HologramManager.getMode(tableKey)));
+        if (e.getRawSlot() == HOLOGRAM_BUTTON_SLOT) {
+            HologramManager.cycleMode(table);
+            HologramManager.markDirty(table); // drawn on the next render pass
+            e.getInventory().setItem(HOLOGRAM_BUTTON_SLOT, makeHologramButton(table.getHologramMode()));
             return;
         }
 
         // Recycle / Stop button
-        if (raw == RECYCLE_BUTTON_SLOT) {
-            e.setCancelled(true);
-            if (e.getClick().isShiftClick() || (e.getCursor() != null && e.getCursor().getType() != Material.AIR)) return;
-
-            Player p = (Player) e.getWhoClicked();
-            Inventory inv = e.getInventory();
-            String tableKey = TablePersistence.getKeyForInventory(inv);
+        if (e.getClick().isShiftClick() || (e.getCursor() != null && e.getCursor().getType() != Material.AIR)) return;
 
-            RecycleSession existing = SessionManager.getSessionByTableKey(tableKey);
+        Player p = (Player) e.getWhoClicked();
+        Inventory inv = e.getInventory();
+        RecycleSession sess = table.getSession();
 
-            // ── STOP ────────────────────────────────────────────────────────
-            if (existing != null && existing.isActive()) {
-                existing.stop();
-                inv.setItem(RECYCLE_BUTTON_SLOT, makeRecycleButton());
-                p.sendMessage(ChatColor.YELLOW + "Recycling stopped. The current item will restart at full time.");
-                return;
-            }
+        // ── STOP ────────────────────────────────────────────────────────
+        if (sess != null && sess.isActive()) {
+            sess.stop();
+            inv.setItem(RECYCLE_BUTTON_SLOT, makeRecycleButton());
+            p.sendMessage(ChatColor.YELLOW + "Recycling stopped. The current item will restart at full time.");
+            return;
+        }
 
-            // ── START ────────────────────────────────────────────────────────
-            List<ItemStack> inputs = new ArrayList<>();
-            for (int i = 0; i < 54; i++) {
-                if (!isInputSlot(i)) continue;
-                ItemStack it = inv.getItem(i);
-                if (it != null && it.getType() != Material.AIR) {
-                    inputs.add(it.clone());
-                }
+        // ── START ────────────────────────────────────────────────────────
+        List<ItemStack> inputs = new ArrayList<>();
+        for (int i = 0; i < 54; i++) {
+            if (!isInputSlot(i)) continue;
+            ItemStack it = inv.getItem(i);
+            if (it != null && it.getType() != Material.AIR) {
+                inputs.add(it.clone());
             }
+        }
 
-            if (inputs.isEmpty()) {
-                p.sendMessage(ChatColor.RED + "Place items on the left side to recycle.");
-                return;
-            }
+        if (inputs.isEmpty()) {
+            p.sendMessage(ChatColor.RED + "Place items on the left side to recycle.");
+            return;
+        }
 
-            UUID owner = p.getUniqueId();
-            RecycleSession session = new RecycleSession(owner, inputs, inv);
-            session.setTableKey(tableKey);
+        UUID owner = p.getUniqueId();
+        RecycleSession session = new RecycleSession(owner, inputs);
+        session.setTable(table);
 
-            SessionManager.registerSession(owner, session);
-            session.start(RecycleTable.getInstance(), 0);
-            // In dev mode start() finishes synchronously, so check active state before overwriting
-            if (session.isActive()) inv.setItem(RECYCLE_BUTTON_SLOT, makeStopButton());
-            p.sendMessage(ChatColor.GREEN + "Recycling started. Outputs will appear on the right.");
-        }
+        SessionManager.registerSession(session);
+        session.start(0);
+        // In dev mode start() finishes synchronously, so check active state before overwriting
+        if (session.isActive()) inv.setItem(RECYCLE_BUTTON_SLOT, makeStopButton());
+        p.sendMessage(ChatColor.GREEN + "Recycling started. Outputs will appear on the right.");
     }
 
-    @EventHandler
-    public void onInventoryDrag(InventoryDragEvent e) {
-        if (!GUI_TITLE.equals(e.getView().getTitle())) return;
-
+    /** Drag that touches the table GUI. */
+    static void onDrag(InventoryDragEvent e) {
         // Prevent dragging items over any divider column slot (buttons or glass panes)
         for (int slot : e.getRawSlots()) {
             if (isDividerSlot(slot)) {
@@ -178,17 +153,17 @@ public class TableListener implements Listener {
         }
     }
 
-    @EventHandler
-    public void onInventoryClose(InventoryCloseEvent e) {
-        activeInventories.remove(e.getInventory());
+    private static boolean isProcessing(TableRecord table) {
+        RecycleSession sess = table.getSession();
+        return sess != null && sess.isActive();
     }
 
     /**
-     * Returns true if the given inventory is an active recycling table GUI.
-     * Uses a tracked Set instead of fragile viewer inspection.
+     * Returns true if the given inventory is a recycling table GUI.
+     * Identified by its holder rather than by title or viewer inspection.
      */
     public static boolean isRecyclingTableInventory(Inventory inv) {
-        return inv != null && activeInventories.contains(inv);
+        return inv != null && inv.getHolder() instanceof TableHolder;
     }
 
     /** Input slots: columns 0–3, all 6 rows (24 slots on the left side). */
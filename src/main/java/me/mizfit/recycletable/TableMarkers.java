@@ -0,0 +1,168 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.Block;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-chunk record of where tables are, so "is this block a table?" stays inside
+ * the block's own chunk.
+ *
+ * Each chunk with tables carries an INTEGER_ARRAY in its PersistentDataContainer
+ * listing their chunk-local positions. Once a chunk's load has been handled it
+ * also has a sorted copy in memory, and {@link #isMarked} answers from that copy:
+ * a map lookup by chunk and a binary search. Only chunks with tables are kept in
+ * memory; for any other chunk {@link #isMarked} checks whether its PDC has a
+ * marker at all, which is also how chunks whose load hasn't been handled yet
+ * are answered. A world's copies are dropped when it unloads.
+ *
+ * TablePersistence stays authoritative: when a chunk loads, its markers are
+ * rebuilt from the registered tables and the PDC is rewritten if it disagrees
+ * (which also marks chunks holding tables placed before markers existed).
+ */
+public class TableMarkers {
+
+    private static final int[] NONE = new int[0];
+
+    // world UID → packed chunk x/z → sorted local positions, for loaded chunks with tables
+    private static final Map<UUID, Map<Long, int[]>> loaded = new HashMap<>();
+
+    private static NamespacedKey markerKey;
+
+    private static NamespacedKey getMarkerKey() {
+        if (markerKey == null)
+            markerKey = new NamespacedKey(RecycleTable.getInstance(), "tables");
+        return markerKey;
+    }
+
+    /** Packs a block's position within its chunk: x and z in 4 bits each, y (signed) in 12. */
+    private static int local(int x, int y, int z) {
+        return ((y & 0xFFF) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /** Returns true if a table is placed at this block. Only valid for blocks in loaded chunks. */
+    public static boolean isMarked(Block b) {
+        Map<Long, int[]> grid = loaded.get(b.getWorld().getUID());
+        int[] positions = grid == null ? null : grid.get(chunkKey(b.getX() >> 4, b.getZ() >> 4));
+        if (positions == null) {
+            // Not indexed — no tables, or a load not handled yet. The common case ends at has()
+            PersistentDataContainer pdc = b.getChunk().getPersistentDataContainer();
+            if (!pdc.has(getMarkerKey(), PersistentDataType.INTEGER_ARRAY)) return false;
+            positions = stored(b.getChunk());
+        }
+        return Arrays.binarySearch(positions, local(b.getX(), b.getY(), b.getZ())) >= 0;
+    }
+
+    /** Records a newly placed table in its chunk. */
+    public static void add(Block b) {
+        Chunk chunk = b.getChunk();
+        int pos = local(b.getX(), b.getY(), b.getZ());
+        int[] current = positions(chunk);
+        int at = Arrays.binarySearch(current, pos);
+        if (at >= 0) return;
+        int insert = -at - 1;
+        int[] next = new int[current.length + 1];
+        System.arraycopy(current, 0, next, 0, insert);
+        next[insert] = pos;
+        System.arraycopy(current, insert, next, insert + 1, current.length - insert);
+        store(chunk, next);
+    }
+
+    /** Forgets a removed table. */
+    public static void remove(Block b) {
+        Chunk chunk = b.getChunk();
+        int[] current = positions(chunk);
+        int at = Arrays.binarySearch(current, local(b.getX(), b.getY(), b.getZ()));
+        if (at < 0) return;
+        int[] next = new int[current.length - 1];
+        System.arraycopy(current, 0, next, 0, at);
+        System.arraycopy(current, at + 1, next, at, next.length - at);
+        store(chunk, next);
+    }
+
+    /**
+     * Rebuilds a freshly loaded chunk's markers from its registered tables and flags
+     * them as loaded. Call after the chunk's region has been loaded; rewrites the PDC
+     * only if it differs. A chunk with neither tables nor a marker isn't indexed.
+     */
+    public static void load(Chunk chunk) {
+        List<TableRecord> tables = TableRegistry.inChunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ());
+        if (tables.isEmpty()) {
+            // Clear a stale marker (its tables were removed while the chunk was unloaded)
+            PersistentDataContainer pdc = chunk.getPersistentDataContainer();
+            if (pdc.has(getMarkerKey(), PersistentDataType.INTEGER_ARRAY)) store(chunk, NONE);
+            return;
+        }
+        int[] expected = new int[tables.size()];
+        for (int i = 0; i < expected.length; i++) {
+            tables.get(i).setChunkLoaded(true);
+            TableKey key = tables.get(i).getKey();
+            expected[i] = local(key.getX(), key.getY(), key.getZ());
+        }
+        Arrays.sort(expected);
+
+        if (!Arrays.equals(stored(chunk), expected)) {
+            store(chunk, expected);
+        } else {
+            grid(chunk).put(chunkKey(chunk.getX(), chunk.getZ()), expected);
+        }
+    }
+
+    /** Drops the in-memory copy; the PDC goes to disk with the chunk. */
+    public static void unload(Chunk chunk) {
+        for (TableRecord table : TableRegistry.inChunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ())) {
+            table.setChunkLoaded(false);
+        }
+        Map<Long, int[]> grid = loaded.get(chunk.getWorld().getUID());
+        if (grid != null) grid.remove(chunkKey(chunk.getX(), chunk.getZ()));
+    }
+
+    /** Drops every copy held for a world that is unloading. */
+    public static void unloadWorld(UUID world) {
+        loaded.remove(world);
+    }
+
+    private static Map<Long, int[]> grid(Chunk chunk) {
+        return loaded.computeIfAbsent(chunk.getWorld().getUID(), k -> new HashMap<>());
+    }
+
+    private static int[] positions(Chunk chunk) {
+        int[] positions = grid(chunk).get(chunkKey(chunk.getX(), chunk.getZ()));
+        return positions == null ? stored(chunk) : positions;
+    }
+
+    /** The chunk's PDC marker, sorted; empty if it has none. */
+    private static int[] stored(Chunk chunk) {
+        int[] stored = chunk.getPersistentDataContainer().get(getMarkerKey(), PersistentDataType.INTEGER_ARRAY);
+        if (stored == null) return NONE;
+        // Sort a copy — the container may hand back its own array
+        stored = stored.clone();
+        Arrays.sort(stored);
+        return stored;
+    }
+
+    private static void store(Chunk chunk, int[] positions) {
+        long key = chunkKey(chunk.getX(), chunk.getZ());
+        PersistentDataContainer pdc = chunk.getPersistentDataContainer();
+        if (positions.length == 0) {
+            Map<Long, int[]> grid = loaded.get(chunk.getWorld().getUID());
+            if (grid != null) grid.remove(key);
+            pdc.remove(getMarkerKey());
+        } else {
+            grid(chunk).put(key, positions);
+            pdc.set(getMarkerKey(), PersistentDataType.INTEGER_ARRAY, positions);
+        }
+    }
+}
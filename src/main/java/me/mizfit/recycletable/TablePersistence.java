@@ -1,224 +1,623 @@
 package me.mizfit.recycletable;
 
 import org.bukkit.Bukkit;
-import org.bukkit.Location;
+import org.bukkit.Chunk;
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 /**
  * Handles creation, storage, and persistence of Recycling Table block inventories.
+ * Live tables are {@link TableRecord}s held in {@link TableRegistry}; this class
+ * creates and removes them for placed blocks and reads/writes their files.
+ *
+ * Tables are stored like Minecraft's own region files: one shard per world and
+ * 32×32-chunk region, at tables/&lt;world UID&gt;/r.&lt;rx&gt;.&lt;rz&gt;.yml. A loading
+ * chunk starts a background read of its shard and of any shard within
+ * {@link #PREFETCH_CHUNKS} chunks of it, so shards are usually in memory before
+ * players reach them; the tables are registered on the server thread when the
+ * read completes. Only lookups that need a table right now (a click or break on
+ * a marked block whose shard is still being read, placement, session restore)
+ * read a shard inline, as does startup for chunks that are already loaded.
+ * Loaded shards stay in memory until shutdown.
+ *
+ * Changes mark a table dirty; every persistence.autosave-interval-seconds each
+ * shard holding a dirty table is rewritten through {@link PersistenceService}.
+ * tables/owners.yml indexes every table by owner, so per-player limits don't
+ * need the shards loaded. An old placed_tables.yml is migrated into shards on
+ * first start.
  */
 public class TablePersistence {
-    // Keeps track of all placed recycling tables by their block location
-    private static final Map<String, Inventory> inventoryMap = new HashMap<>();
-    private static final Map<String, Long>      placedAt     = new HashMap<>();
-    private static final Map<String, UUID>      ownerMap     = new HashMap<>();
-    // Reverse lookup so TableListener can find the key from an open inventory
-    private static final Map<Inventory, String> invToKey     = new HashMap<>();
+    // Names of worlds seen in saved keys, so keys in worlds that aren't loaded (or
+    // were renamed since the last save) still resolve and round-trip
+    private static final Map<String, UUID> worldIds   = new HashMap<>();
+    private static final Map<UUID, String> worldNames = new HashMap<>();
 
-    /**
-     * Generates a unique string key for a given block location.
-     */
-    private static String keyFor(Location loc) {
-        if (loc == null || loc.getWorld() == null) {
-            throw new IllegalArgumentException("Tried to generate key for null or invalid location!");
+    private static final int REGION_SHIFT = 5; // 32×32 chunks per shard
+    // A loading chunk also prefetches shards this many chunks away
+    private static final int PREFETCH_CHUNKS = 8;
+
+    // world UID → packed region x/z → shard, loaded or being read
+    private static final Map<UUID, Map<Long, Region>> regions = new HashMap<>();
+    // Shards holding a table that changed since the last autosave
+    private static final Set<Region> dirtyRegions = new LinkedHashSet<>();
+    // Every placed table by owner, loaded or not (mirrors tables/owners.yml)
+    private static final Map<UUID, Set<TableKey>> owners = new HashMap<>();
+    private static boolean ownersDirty = false;
+
+    private static File tablesDir;
+    private static BukkitTask autosaveTask;
+
+    /** One shard file and the loaded tables it holds. */
+    private static final class Region {
+        final UUID world;
+        final int x, z;
+        final Set<TableRecord> tables = new LinkedHashSet<>();
+        boolean loaded;  // tables registered
+        boolean reading; // a background read is in flight
+        // Packed x/z of chunks that loaded before the shard did, waiting for their setup
+        Set<Long> waiting;
+
+        Region(UUID world, int x, int z) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
         }
-        return loc.getWorld().getName() + ":" + loc.getBlockX() + ":" + loc.getBlockY() + ":" + loc.getBlockZ();
-    }
 
+        File file() {
+            return new File(new File(tablesDir, world.toString()), "r." + x + "." + z + ".yml");
+        }
+    }
 
     /**
-     * Creates a new 54-slot inventory for a placed recycling table block.
+     * Creates and registers a new table (empty 54-slot inventory) for a placed block.
      */
-    public static Inventory createInventoryForBlock(Block b) {
-        String key = keyFor(b.getLocation());
-        Inventory inv = Bukkit.createInventory(null, 54, TableListener.GUI_TITLE);
-        inventoryMap.put(key, inv);
-        invToKey.put(inv, key);
-        placedAt.put(key, System.currentTimeMillis());
-        return inv;
+    public static TableRecord registerTable(Block b, UUID owner) {
+        TableRecord table = new TableRecord(TableKey.of(b), System.currentTimeMillis());
+        addTable(regionOf(table.getKey()), table, owner);
+        TableMarkers.add(b);
+        table.setChunkLoaded(true); // just placed, so its chunk is loaded
+        OverflowStorage.attach(table);
+        markDirty(table);
+        return table;
     }
 
     /**
-     * Registers an already-created inventory for a block.
+     * Returns the table placed at this block, or null if it isn't a recycling table.
+     * Blocks in chunks without tables are rejected by the chunk markers, without a registry lookup.
      */
-    public static void registerInventoryForBlock(Block b, Inventory inv) {
-        String key = keyFor(b.getLocation());
-        inventoryMap.put(key, inv);
-        invToKey.put(inv, key);
-        placedAt.put(key, System.currentTimeMillis());
+    public static TableRecord getTable(Block b) {
+        if (!TableMarkers.isMarked(b)) return null;
+        TableKey key = TableKey.of(b);
+        TableRecord table = TableRegistry.get(key);
+        // Marked, but its shard is still being read — read it now rather than miss the table
+        if (table == null && !isRegionLoaded(key)) table = loadTable(key);
+        return table;
     }
 
     /**
      * Checks if a block is a registered recycling table.
      */
     public static boolean isRecyclingTableBlock(Block b) {
-        return inventoryMap.containsKey(keyFor(b.getLocation()));
+        return getTable(b) != null;
     }
 
     /**
-     * Gets the inventory linked to a recycling table block.
+     * Removes a recycling table block: ends its session, destroys its hologram and
+     * unregisters it. Any overflow is kept on disk under the table's key.
      */
-    public static Inventory getInventoryForBlock(Block b) {
-        return inventoryMap.get(keyFor(b.getLocation()));
+    public static TableRecord unregisterBlock(Block b) {
+        TableRecord table = removeTable(TableKey.of(b));
+        if (table == null) return null;
+        TableMarkers.remove(b);
+        // A session on a broken table has nowhere to put its output — end it
+        if (table.getSession() != null) table.getSession().stop();
+        HologramManager.removeHologram(table);
+        OverflowStorage.detach(table);
+        return table;
     }
 
     /**
-     * Removes a recycling table block and its stored inventory.
+     * The table at {@code key}, reading its shard first if the chunk isn't loaded.
+     * Returns null if no table is placed there.
      */
-    public static void unregisterBlock(Block b) {
-        String key = keyFor(b.getLocation());
-        Inventory inv = inventoryMap.remove(key);
-        if (inv != null) invToKey.remove(inv);
-        placedAt.remove(key);
-        ownerMap.remove(key);
-    }
-
-    /** Records the owner of a placed recycling table. */
-    public static void setOwner(Block b, UUID uuid) {
-        ownerMap.put(keyFor(b.getLocation()), uuid);
+    static TableRecord loadTable(TableKey key) {
+        if (key == null) return null;
+        regionOf(key);
+        return TableRegistry.get(key);
     }
 
     /** Returns the UUID of whoever placed this table, or null if unknown. */
-    public static UUID getOwner(String key) {
-        return ownerMap.get(key);
+    public static UUID getOwner(TableKey key) {
+        TableRecord table = TableRegistry.get(key);
+        return table == null ? null : table.getOwner();
     }
 
-    /** Returns true if the given player is the owner of the table at this block. */
-    public static boolean isOwner(Block b, org.bukkit.entity.Player p) {
-        UUID owner = ownerMap.get(keyFor(b.getLocation()));
-        return owner != null && owner.equals(p.getUniqueId());
+    /** Keys of every table this player has placed, including ones in unloaded regions (read-only). */
+    public static Set<TableKey> tablesOwnedBy(UUID uuid) {
+        Set<TableKey> keys = uuid == null ? null : owners.get(uuid);
+        return keys == null ? Collections.<TableKey>emptySet() : Collections.unmodifiableSet(keys);
     }
 
     /** Returns true if the player already has a placed Recycling Table somewhere in the world. */
     public static boolean hasPlacedTable(UUID uuid) {
-        for (UUID owner : ownerMap.values()) {
-            if (uuid.equals(owner)) return true;
+        return !tablesOwnedBy(uuid).isEmpty();
+    }
+
+    /** Returns how many Recycling Tables this player currently has placed. */
+    public static int countPlacedTables(UUID uuid) {
+        return tablesOwnedBy(uuid).size();
+    }
+
+    private static boolean isChunkLoaded(TableKey key) {
+        World world = Bukkit.getWorld(key.getWorld());
+        return world != null && world.isChunkLoaded(key.getChunkX(), key.getChunkZ());
+    }
+
+    // ── Legacy "world:x:y:z" keys (saved files only) ─────────────────────────
+
+    /** Formats a key in the "world:x:y:z" form used by the saved YAML files. */
+    public static String legacyKey(TableKey key) {
+        World world = Bukkit.getWorld(key.getWorld());
+        String name = world != null ? world.getName() : worldNames.get(key.getWorld());
+        if (name == null) name = key.getWorld().toString();
+        return name + ":" + key.getX() + ":" + key.getY() + ":" + key.getZ();
+    }
+
+    /**
+     * Parses a saved "world:x:y:z" key. Returns null if the key is malformed or its
+     * world can't be identified (not loaded and never seen in a saved table).
+     */
+    public static TableKey parseKey(String legacy) {
+        return parseKey(legacy, null);
+    }
+
+    private static TableKey parseKey(String legacy, UUID worldId) {
+        if (legacy == null) return null;
+        String[] parts = legacy.split(":");
+        if (parts.length != 4) return null;
+        if (worldId == null) {
+            World world = Bukkit.getWorld(parts[0]);
+            worldId = world != null ? world.getUID() : worldIds.get(parts[0]);
         }
-        return false;
+        if (worldId == null) return null;
+        try {
+            return new TableKey(worldId, Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ── Regions ───────────────────────────────────────────────────────────────
+
+    private static long regionKey(int regionX, int regionZ) {
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    private static Region region(UUID world, int regionX, int regionZ) {
+        Map<Long, Region> grid = regions.computeIfAbsent(world, k -> new HashMap<>());
+        long rk = regionKey(regionX, regionZ);
+        Region region = grid.get(rk);
+        if (region == null) {
+            region = new Region(world, regionX, regionZ);
+            grid.put(rk, region);
+        }
+        return region;
+    }
+
+    private static boolean isRegionLoaded(TableKey key) {
+        Map<Long, Region> grid = regions.get(key.getWorld());
+        Region region = grid == null ? null
+                : grid.get(regionKey(key.getChunkX() >> REGION_SHIFT, key.getChunkZ() >> REGION_SHIFT));
+        return region != null && region.loaded;
+    }
+
+    /** The shard a table belongs to, read from disk first if it isn't loaded. */
+    private static Region regionOf(TableKey key) {
+        return loadRegion(key.getWorld(), key.getChunkX() >> REGION_SHIFT, key.getChunkZ() >> REGION_SHIFT);
     }
 
     /**
-     * Returns the "world:x:y:z" key of the table owned by this player,
-     * or null if they have no placed table.
+     * Called on ChunkLoadEvent: starts background reads of the chunk's shard and of
+     * the shards within {@link #PREFETCH_CHUNKS} of it. Returns true if the chunk's
+     * own shard is already loaded; otherwise the chunk is set up through
+     * {@link ChunkListener#chunkReady} once its shard is.
      */
-    public static String getTableKeyForOwner(UUID uuid) {
-        for (Map.Entry<String, UUID> entry : ownerMap.entrySet()) {
-            if (uuid.equals(entry.getValue())) return entry.getKey();
+    public static boolean loadChunk(UUID world, int chunkX, int chunkZ) {
+        for (int rx = (chunkX - PREFETCH_CHUNKS) >> REGION_SHIFT; rx <= (chunkX + PREFETCH_CHUNKS) >> REGION_SHIFT; rx++) {
+            for (int rz = (chunkZ - PREFETCH_CHUNKS) >> REGION_SHIFT; rz <= (chunkZ + PREFETCH_CHUNKS) >> REGION_SHIFT; rz++) {
+                prefetch(region(world, rx, rz));
+            }
         }
-        return null;
+        Region region = region(world, chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+        if (region.loaded) return true;
+        if (region.waiting == null) region.waiting = new HashSet<>();
+        region.waiting.add(regionKey(chunkX, chunkZ));
+        return false;
+    }
+
+    private static void prefetch(Region region) {
+        if (region.loaded || region.reading) return;
+        region.reading = true;
+        PersistenceService.read(region.file(), yc -> {
+            region.reading = false;
+            // Read inline meanwhile (see loadRegion) — its tables are registered already
+            if (!region.loaded) readRegion(region, yc);
+        });
     }
 
     /**
-     * Returns the "world:x:y:z" key for the given inventory, or null if it is not a placed table.
-     * Used by TableListener to link a RecycleSession to its hologram.
+     * The shard at these region coordinates, read inline if it isn't loaded yet. For
+     * callers that need its tables right away; a background read still in flight for
+     * it finds the region loaded and drops its result.
      */
-    public static String getKeyForInventory(Inventory inv) {
-        return invToKey.get(inv);
+    private static Region loadRegion(UUID world, int regionX, int regionZ) {
+        Region region = region(world, regionX, regionZ);
+        if (!region.loaded) readRegion(region, PersistenceService.loadYaml(region.file()));
+        return region;
+    }
+
+    /** Registers a shard's tables, then sets up the chunks that loaded before it did. */
+    private static void readRegion(Region region, YamlConfiguration yc) {
+        region.loaded = true;
+        UUID world = region.world;
+        for (String key : yc.getKeys(false)) {
+            rememberWorldName(key, world);
+            TableKey tableKey = parseKey(key, world);
+            if (tableKey == null || TableRegistry.get(tableKey) != null) continue;
+            TableRecord table = readTable(yc, key, tableKey);
+            addTable(region, table, readOwner(yc, key));
+            OverflowStorage.attach(table);
+            SessionManager.attachTable(table);
+        }
+
+        Set<Long> waiting = region.waiting;
+        region.waiting = null;
+        World w = waiting == null ? null : Bukkit.getWorld(world);
+        if (w == null) return;
+        for (long ck : waiting) {
+            int cx = (int) (ck >> 32), cz = (int) ck;
+            if (w.isChunkLoaded(cx, cz)) ChunkListener.chunkReady(w.getChunkAt(cx, cz));
+        }
     }
 
+    /** Registers a table as part of a loaded shard and indexes its owner. */
+    private static void addTable(Region region, TableRecord table, UUID owner) {
+        TableRegistry.register(table);
+        TableRegistry.setOwner(table, owner);
+        region.tables.add(table);
+        if (owner != null && owners.computeIfAbsent(owner, k -> new LinkedHashSet<>()).add(table.getKey())) {
+            ownersDirty = true;
+        }
+    }
+
+    private static TableRecord removeTable(TableKey key) {
+        TableRecord table = TableRegistry.unregister(key);
+        if (table == null) return null;
+        Region region = regionOf(key);
+        region.tables.remove(table);
+        dirtyRegions.add(region);
+        table.setDirty(false);
+        Set<TableKey> keys = table.getOwner() == null ? null : owners.get(table.getOwner());
+        if (keys != null && keys.remove(key)) {
+            if (keys.isEmpty()) owners.remove(table.getOwner());
+            ownersDirty = true;
+        }
+        return table;
+    }
+
+    // ── Dirty tracking & autosave ─────────────────────────────────────────────
+
     /**
-     * Parses a "world:x:y:z" key back into a Bukkit Location.
-     * Returns null if the world is not loaded or the key is malformed.
+     * Flags a table's inventory as changed so the next autosave rewrites its shard.
+     * Called for GUI clicks and drags, hopper transfers, session output and overflow returns.
      */
-    public static Location getLocationForKey(String key) {
-        if (key == null) return null;
-        String[] parts = key.split(":");
-        if (parts.length != 4) return null;
-        World world = Bukkit.getWorld(parts[0]);
-        if (world == null) return null;
-        try {
-            int x = Integer.parseInt(parts[1]);
-            int y = Integer.parseInt(parts[2]);
-            int z = Integer.parseInt(parts[3]);
-            return new Location(world, x, y, z);
-        } catch (NumberFormatException e) {
-            return null;
+    public static void markDirty(TableRecord table) {
+        if (table == null || table.isDirty()) return;
+        table.setDirty(true);
+        dirtyRegions.add(regionOf(table.getKey()));
+    }
+
+    /** Number of shards waiting to be written by the next autosave. */
+    public static int getDirtyRegionCount() { return dirtyRegions.size(); }
+
+    /** Number of shards currently loaded. */
+    public static int getLoadedRegionCount() {
+        int n = 0;
+        for (Map<Long, Region> grid : regions.values()) {
+            for (Region region : grid.values()) if (region.loaded) n++;
         }
+        return n;
     }
 
     /**
-     * Saves all placed recycling table inventories to a YAML file.
+     * Queues a write of every shard holding a changed table, and of owners.yml if
+     * it changed. Runs every persistence.autosave-interval-seconds.
      */
+    public static void autosave() {
+        for (Region region : dirtyRegions) PersistenceService.save(region.file(), regionSnapshot(region));
+        dirtyRegions.clear();
+        if (ownersDirty) {
+            ownersDirty = false;
+            PersistenceService.save(new File(tablesDir, "owners.yml"), ownersSnapshot());
+        }
+    }
+
+    /** Queues the last autosave and stops the timer. The writes finish in PersistenceService.shutdown(). */
     public static void savePlacedTables(RecycleTable plugin) {
-        try {
-            File file = new File(plugin.getDataFolder(), "placed_tables.yml");
+        if (autosaveTask != null) autosaveTask.cancel();
+        autosaveTask = null;
+        autosave();
+    }
+
+    private static PersistenceService.Snapshot regionSnapshot(Region region) {
+        // Copy now, on the server thread — the I/O thread serializes the copy later
+        final List<SavedTable> copy = new ArrayList<>(region.tables.size());
+        for (TableRecord table : region.tables) {
+            table.setDirty(false);
+            copy.add(new SavedTable(table));
+        }
+        return () -> {
             YamlConfiguration yaml = new YamlConfiguration();
+            for (SavedTable table : copy) table.writeTo(yaml);
+            return yaml;
+        };
+    }
 
-            for (Map.Entry<String, Inventory> entry : inventoryMap.entrySet()) {
-                String key = entry.getKey();
-                Inventory inv = entry.getValue();
+    private static PersistenceService.Snapshot ownersSnapshot() {
+        final Map<String, List<String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<UUID, Set<TableKey>> e : owners.entrySet()) {
+            List<String> keys = new ArrayList<>(e.getValue().size());
+            for (TableKey key : e.getValue()) keys.add(key.toString());
+            copy.put(e.getKey().toString(), keys);
+        }
+        return () -> {
+            YamlConfiguration yaml = new YamlConfiguration();
+            for (Map.Entry<String, List<String>> e : copy.entrySet()) yaml.set("owners." + e.getKey(), e.getValue());
+            return yaml;
+        };
+    }
 
-                for (int i = 0; i < inv.getSize(); i++) {
-                    ItemStack item = inv.getItem(i);
-                    if (item != null) {
-                        yaml.set(key + ".items." + i, item);
-                    }
-                }
+    /** A table's saved fields, copied on the server thread for an off-thread write. */
+    private static final class SavedTable {
+        final String key;
+        final UUID worldId;
+        final long placedAt;
+        final UUID owner;
+        final ItemStack[] items;
 
-                yaml.set(key + ".placedAt", placedAt.getOrDefault(key, System.currentTimeMillis()));
-                UUID owner = ownerMap.get(key);
-                if (owner != null) yaml.set(key + ".owner", owner.toString());
-            }
+        SavedTable(TableRecord table) {
+            this.key = legacyKey(table.getKey());
+            this.worldId = table.getKey().getWorld();
+            this.placedAt = table.getPlacedAt();
+            this.owner = table.getOwner();
+            this.items = table.getSlots().snapshot();
+        }
 
-            yaml.save(file);
-        } catch (IOException ex) {
-            ex.printStackTrace();
+        void writeTo(YamlConfiguration yaml) {
+            for (int i = 0; i < items.length; i++) {
+                if (items[i] != null) yaml.set(key + ".items." + i, items[i]);
+            }
+            yaml.set(key + ".placedAt", placedAt);
+            if (owner != null) yaml.set(key + ".owner", owner.toString());
+            // The UID keeps the table attached to its world even if the world is renamed
+            yaml.set(key + ".world-uid", worldId.toString());
         }
     }
 
+    // ── Loading ───────────────────────────────────────────────────────────────
+
     /**
-     * Loads previously saved placed tables from placed_tables.yml.
+     * Migrates an old placed_tables.yml if there is one, loads the owner index and
+     * the shards for every chunk that is already loaded, and starts the autosave timer.
      */
     public static void loadPlacedTables(RecycleTable plugin) {
+        tablesDir = new File(plugin.getDataFolder(), "tables");
         try {
-            File f = new File(plugin.getDataFolder(), "placed_tables.yml");
-            if (!f.exists()) return;
-
-            YamlConfiguration yc = YamlConfiguration.loadConfiguration(f);
-            Set<String> keys = yc.getKeys(false);
-            if (keys.isEmpty()) return;
-
-            for (String key : keys) {
-                Inventory inv = Bukkit.createInventory(null, 54, TableListener.GUI_TITLE);
-
-                if (yc.isConfigurationSection(key + ".items")) {
-                    org.bukkit.configuration.ConfigurationSection section = yc.getConfigurationSection(key + ".items");
-                    if (section != null) {
-                        for (String idx : section.getKeys(false)) {
-                            ItemStack it = yc.getItemStack(key + ".items." + idx);
-                            if (it != null) inv.setItem(Integer.parseInt(idx), it);
-                        }
-                    }
-                }
+            File legacy = new File(plugin.getDataFolder(), "placed_tables.yml");
+            if (legacy.exists()) migrate(plugin, legacy);
+            loadOwners();
+            resolveUnresolved(plugin);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks())
+                loadRegion(world.getUID(), chunk.getX() >> REGION_SHIFT, chunk.getZ() >> REGION_SHIFT);
+        }
+        // Markers after every shard is in, so chunks on region edges see all their tables
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) TableMarkers.load(chunk);
+        }
+
+        // Spawn holograms — tables in unloaded chunks get theirs on ChunkLoadEvent
+        for (TableRecord table : TableRegistry.all()) {
+            if (isChunkLoaded(table.getKey())) HologramManager.spawnHologram(table);
+        }
 
-                inventoryMap.put(key, inv);
-                invToKey.put(inv, key);
-                long placed = yc.getLong(key + ".placedAt", System.currentTimeMillis());
-                placedAt.put(key, placed);
+        long autosaveTicks = Math.max(5, ConfigManager.getAutosaveIntervalSeconds()) * 20L;
+        if (autosaveTask != null) autosaveTask.cancel();
+        autosaveTask = Bukkit.getScheduler().runTaskTimer(plugin, TablePersistence::autosave, autosaveTicks, autosaveTicks);
+    }
 
-                String ownerStr = yc.getString(key + ".owner");
-                if (ownerStr != null) {
-                    try { ownerMap.put(key, UUID.fromString(ownerStr)); } catch (Exception ignored) {}
+    private static void loadOwners() {
+        File file = new File(tablesDir, "owners.yml");
+        if (!file.exists()) {
+            rebuildOwners();
+            return;
+        }
+        YamlConfiguration yc = PersistenceService.loadYaml(file);
+        ConfigurationSection section = yc.getConfigurationSection("owners");
+        if (section == null) return;
+        for (String ownerStr : section.getKeys(false)) {
+            try {
+                Set<TableKey> keys = owners.computeIfAbsent(UUID.fromString(ownerStr), k -> new LinkedHashSet<>());
+                for (String key : section.getStringList(ownerStr)) {
+                    TableKey tableKey = TableKey.parse(key);
+                    if (tableKey != null) keys.add(tableKey);
                 }
+            } catch (IllegalArgumentException ignored) {}
+        }
+    }
 
-                // Spawn hologram above this table
-                Location loc = getLocationForKey(key);
-                if (loc != null) HologramManager.spawnHologram(loc);
+    /** owners.yml is missing (deleted, or never written) — rebuild it from every shard. */
+    private static void rebuildOwners() {
+        File[] worlds = tablesDir.listFiles(File::isDirectory);
+        if (worlds == null) return;
+        for (File worldDir : worlds) {
+            UUID world;
+            try {
+                world = UUID.fromString(worldDir.getName());
+            } catch (IllegalArgumentException ex) {
+                continue;
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
+            File[] shards = worldDir.listFiles((dir, name) -> name.startsWith("r.") && name.endsWith(".yml"));
+            if (shards == null) continue;
+            for (File shard : shards) {
+                YamlConfiguration yc = PersistenceService.loadYaml(shard);
+                for (String key : yc.getKeys(false)) {
+                    TableKey tableKey = parseKey(key, world);
+                    UUID owner = readOwner(yc, key);
+                    if (tableKey != null && owner != null)
+                        owners.computeIfAbsent(owner, k -> new LinkedHashSet<>()).add(tableKey);
+                }
+            }
+        }
+        ownersDirty = true;
+    }
+
+    /**
+     * Tables whose world couldn't be identified are kept in tables/unresolved.yml
+     * untouched. Any whose world is now known are moved into their shard.
+     */
+    private static void resolveUnresolved(RecycleTable plugin) throws IOException {
+        File file = new File(tablesDir, "unresolved.yml");
+        if (!file.exists()) return;
+        YamlConfiguration yc = PersistenceService.loadYaml(file);
+        YamlConfiguration left = new YamlConfiguration();
+        int resolved = 0;
+        for (String key : yc.getKeys(false)) {
+            if (importLegacy(yc, key)) resolved++;
+            else copyRaw(yc, key, left);
         }
-    }}
+        if (resolved == 0) return;
+        plugin.getLogger().info("Restored " + resolved + " placed table(s) whose world is now known.");
+        PersistenceService.writeAtomically(file, left.saveToString());
+    }
 
+    /**
+     * Registers one entry of a pre-shard file (placed_tables.yml layout) in its shard.
+     * Returns false if its world can't be identified.
+     */
+    private static boolean importLegacy(YamlConfiguration yc, String key) {
+        UUID worldId = null;
+        String uidStr = yc.getString(key + ".world-uid");
+        if (uidStr != null) {
+            try {
+                worldId = UUID.fromString(uidStr);
+                rememberWorldName(key, worldId);
+            } catch (Exception ignored) {}
+        }
+        TableKey tableKey = parseKey(key, worldId);
+        if (tableKey == null) return false;
 
+        Region region = regionOf(tableKey);
+        if (TableRegistry.get(tableKey) == null) {
+            TableRecord table = readTable(yc, key, tableKey);
+            addTable(region, table, readOwner(yc, key));
+            markDirty(table);
+        }
+        return true;
+    }
+
+    private static TableRecord readTable(ConfigurationSection yc, String key, TableKey tableKey) {
+        long placed = yc.getLong(key + ".placedAt", System.currentTimeMillis());
+        TableRecord table = new TableRecord(tableKey, placed);
+        readItems(yc, key + ".items", table.getSlots());
+        return table;
+    }
+
+    private static UUID readOwner(ConfigurationSection yc, String key) {
+        String ownerStr = yc.getString(key + ".owner");
+        if (ownerStr == null) return null;
+        try {
+            return UUID.fromString(ownerStr);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static void readItems(ConfigurationSection yaml, String path, TableSlots slots) {
+        ConfigurationSection section = yaml.getConfigurationSection(path);
+        if (section == null) return;
+        for (String idx : section.getKeys(false)) {
+            ItemStack it = section.getItemStack(idx);
+            if (it != null) slots.setItem(Integer.parseInt(idx), it);
+        }
+    }
+
+    private static void rememberWorldName(String legacy, UUID worldId) {
+        int colon = legacy.indexOf(':');
+        if (colon <= 0) return;
+        String worldName = legacy.substring(0, colon);
+        worldIds.putIfAbsent(worldName, worldId);
+        worldNames.putIfAbsent(worldId, worldName);
+    }
+
+    private static void copyRaw(YamlConfiguration from, String key, YamlConfiguration to) {
+        ConfigurationSection section = from.getConfigurationSection(key);
+        if (section == null) return;
+        for (Map.Entry<String, Object> value : section.getValues(true).entrySet()) {
+            if (!(value.getValue() instanceof ConfigurationSection)) to.set(key + "." + value.getKey(), value.getValue());
+        }
+    }
+
+    // ── Migration from placed_tables.yml ──────────────────────────────────────
+
+    /**
+     * Moves every table from placed_tables.yml into shards, writing them
+     * synchronously, then renames the old file to placed_tables.yml.migrated.
+     * Tables whose world is unknown go to unresolved.yml.
+     */
+    private static void migrate(RecycleTable plugin, File legacy) throws IOException {
+        YamlConfiguration yc = PersistenceService.loadYaml(legacy);
+        YamlConfiguration left = new YamlConfiguration();
+        int unknown = 0;
+        for (String key : yc.getKeys(false)) {
+            if (importLegacy(yc, key)) continue;
+            plugin.getLogger().warning("Keeping placed table " + key + " unloaded: its world is unknown.");
+            copyRaw(yc, key, left);
+            unknown++;
+        }
+
+        // Write everything now, before the old file goes away
+        for (Region region : dirtyRegions) PersistenceService.writeAtomically(region.file(), regionSnapshot(region).build().saveToString());
+        dirtyRegions.clear();
+        PersistenceService.writeAtomically(new File(tablesDir, "owners.yml"), ownersSnapshot().build().saveToString());
+        ownersDirty = false;
+        if (unknown > 0) PersistenceService.writeAtomically(new File(tablesDir, "unresolved.yml"), left.saveToString());
+
+        if (!legacy.renameTo(new File(plugin.getDataFolder(), "placed_tables.yml.migrated")))
+            plugin.getLogger().warning("Could not rename placed_tables.yml — delete it to stop it being migrated again.");
+        plugin.getLogger().info("Migrated " + TableRegistry.all().size() + " placed table(s) into "
+                + getLoadedRegionCount() + " region file(s).");
+    }
+}
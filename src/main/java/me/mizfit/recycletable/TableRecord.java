@@ -0,0 +1,101 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * All live state for one placed Recycling Table: its slots, owner, placement
+ * time, running session, hologram and overflow. There is exactly one record per
+ * table, reachable from {@link TableRegistry} by key, by inventory or by owner,
+ * so handlers resolve a table once and read everything else off the record.
+ *
+ * Fields are owned by the manager named next to them; only that manager writes them.
+ */
+public class TableRecord {
+    private final TableKey key;
+    private final TableSlots slots;
+    private final long placedAt;
+
+    private UUID owner;                // TableRegistry (keeps the owner index in sync)
+    private RecycleSession session;    // SessionManager
+
+    // HologramManager
+    private HologramBackend.Hologram hologram = null;
+    private HologramManager.HologramMode hologramMode = HologramManager.HologramMode.CURRENT_ITEM;
+    private long nextRedrawTick = 0L;
+    private boolean watched = false;    // a player is within hologram view distance
+    private boolean renderQueued = false; // already in HologramManager's dirty queue
+
+    // TablePersistence
+    private boolean dirty = false;      // inventory changed since the last autosave
+
+    // TableMarkers
+    private boolean chunkLoaded = false;
+
+    // OverflowStorage
+    private List<ItemStack> overflow = null;
+    private boolean repopulatePending = false;
+
+    // OutputPlacer
+    private OutputPlacer outputPlacer = null;
+
+    // DeferredOutput
+    private OutputDelta pendingOutput = null; // output held back while the chunk is unloaded
+
+    public TableRecord(TableKey key, long placedAt) {
+        this.key = key;
+        this.slots = new TableSlots(this);
+        this.placedAt = placedAt;
+    }
+
+    public TableKey getKey() { return key; }
+    /** Block location of this table, or null if its world isn't loaded. */
+    public Location getLocation() { return key.toLocation(); }
+    /** The table's contents; the GUI inventory only exists while someone has it open. */
+    public TableSlots getSlots() { return slots; }
+    public long getPlacedAt() { return placedAt; }
+
+    public UUID getOwner() { return owner; }
+    void setOwner(UUID owner) { this.owner = owner; }
+
+    /** Returns true if the given player placed this table. */
+    public boolean isOwnedBy(Player p) {
+        return owner != null && owner.equals(p.getUniqueId());
+    }
+
+    /** True while the chunk holding this table is loaded. */
+    public boolean isChunkLoaded() { return chunkLoaded; }
+    void setChunkLoaded(boolean loaded) { this.chunkLoaded = loaded; }
+
+    boolean isDirty() { return dirty; }
+    void setDirty(boolean dirty) { this.dirty = dirty; }
+
+    public RecycleSession getSession() { return session; }
+    void setSession(RecycleSession session) { this.session = session; }
+
+    HologramBackend.Hologram getHologram() { return hologram; }
+    void setHologram(HologramBackend.Hologram hologram) { this.hologram = hologram; }
+    public HologramManager.HologramMode getHologramMode() { return hologramMode; }
+    void setHologramMode(HologramManager.HologramMode mode) { this.hologramMode = mode; }
+    long getNextRedrawTick() { return nextRedrawTick; }
+    void setNextRedrawTick(long tick) { this.nextRedrawTick = tick; }
+    boolean isWatched() { return watched; }
+    void setWatched(boolean watched) { this.watched = watched; }
+    boolean isRenderQueued() { return renderQueued; }
+    void setRenderQueued(boolean queued) { this.renderQueued = queued; }
+
+    List<ItemStack> getOverflow() { return overflow; }
+    void setOverflow(List<ItemStack> overflow) { this.overflow = overflow; }
+    boolean isRepopulatePending() { return repopulatePending; }
+    void setRepopulatePending(boolean pending) { this.repopulatePending = pending; }
+
+    OutputPlacer getOutputPlacer() { return outputPlacer; }
+    void setOutputPlacer(OutputPlacer placer) { this.outputPlacer = placer; }
+
+    OutputDelta getPendingOutput() { return pendingOutput; }
+    void setPendingOutput(OutputDelta delta) { this.pendingOutput = delta; }
+}
@@ -0,0 +1,132 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.inventory.Inventory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The single index of placed Recycling Tables. Each table is one {@link TableRecord},
+ * found by its {@link TableKey}, by its GUI inventory (once opened), by its owner, or by the
+ * chunk it sits in (a per-world grid for proximity and chunk-lifecycle checks).
+ */
+public class TableRegistry {
+    private static final Map<TableKey, TableRecord>    byKey       = new HashMap<>();
+    private static final Map<Inventory, TableRecord>   byInventory = new IdentityHashMap<>();
+    private static final Map<UUID, Set<TableRecord>>   byOwner     = new HashMap<>();
+    // world UID → packed chunk x/z → tables in that chunk
+    private static final Map<UUID, Map<Long, List<TableRecord>>> byChunk = new HashMap<>();
+
+    /** Returns the table with the given key, or null if none is placed there. */
+    public static TableRecord get(TableKey key) {
+        return key == null ? null : byKey.get(key);
+    }
+
+    /** Returns the table whose GUI this is, or null if it isn't a table inventory. */
+    public static TableRecord get(Inventory inv) {
+        return inv == null ? null : byInventory.get(inv);
+    }
+
+    /** Every registered table (read-only view). */
+    public static Collection<TableRecord> all() {
+        return Collections.unmodifiableCollection(byKey.values());
+    }
+
+    /** Tables placed by this owner (read-only, possibly empty). */
+    public static Set<TableRecord> ownedBy(UUID owner) {
+        Set<TableRecord> tables = owner == null ? null : byOwner.get(owner);
+        return tables == null ? Collections.<TableRecord>emptySet() : Collections.unmodifiableSet(tables);
+    }
+
+    /** Tables in the given chunk (read-only, possibly empty). */
+    public static List<TableRecord> inChunk(UUID world, int chunkX, int chunkZ) {
+        Map<Long, List<TableRecord>> grid = byChunk.get(world);
+        List<TableRecord> tables = grid == null ? null : grid.get(chunkKey(chunkX, chunkZ));
+        return tables == null ? Collections.<TableRecord>emptyList() : Collections.unmodifiableList(tables);
+    }
+
+    /** Adds a table, replacing any previous record with the same key. */
+    static void register(TableRecord table) {
+        TableRecord old = byKey.put(table.getKey(), table);
+        if (old != null && old != table) {
+            unindexInventory(old);
+            unindexOwner(old);
+            unindexChunk(old);
+        }
+        Inventory inv = table.getSlots().getInventory();
+        if (inv != null) byInventory.put(inv, table);
+        indexOwner(table);
+        indexChunk(table);
+    }
+
+    /** Removes and returns the table with the given key, or null if there was none. */
+    static TableRecord unregister(TableKey key) {
+        TableRecord table = byKey.remove(key);
+        if (table == null) return null;
+        unindexInventory(table);
+        unindexOwner(table);
+        unindexChunk(table);
+        return table;
+    }
+
+    /** Changes a table's owner, keeping the owner index in sync. */
+    static void setOwner(TableRecord table, UUID owner) {
+        unindexOwner(table);
+        table.setOwner(owner);
+        if (byKey.get(table.getKey()) == table) indexOwner(table);
+    }
+
+    /** Indexes a table's GUI inventory, created the first time the table is opened. */
+    static void indexInventory(TableRecord table, Inventory inv) {
+        if (table != null && byKey.get(table.getKey()) == table) byInventory.put(inv, table);
+    }
+
+    private static void unindexInventory(TableRecord table) {
+        Inventory inv = table.getSlots().getInventory();
+        if (inv != null) byInventory.remove(inv);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static void indexChunk(TableRecord table) {
+        TableKey key = table.getKey();
+        byChunk.computeIfAbsent(key.getWorld(), k -> new HashMap<>())
+                .computeIfAbsent(chunkKey(key.getChunkX(), key.getChunkZ()), k -> new ArrayList<>(1))
+                .add(table);
+    }
+
+    private static void unindexChunk(TableRecord table) {
+        TableKey key = table.getKey();
+        Map<Long, List<TableRecord>> grid = byChunk.get(key.getWorld());
+        if (grid == null) return;
+        long chunk = chunkKey(key.getChunkX(), key.getChunkZ());
+        List<TableRecord> tables = grid.get(chunk);
+        if (tables == null) return;
+        tables.remove(table);
+        if (tables.isEmpty()) grid.remove(chunk);
+        if (grid.isEmpty()) byChunk.remove(key.getWorld());
+    }
+
+    private static void indexOwner(TableRecord table) {
+        if (table.getOwner() == null) return;
+        byOwner.computeIfAbsent(table.getOwner(), k -> new LinkedHashSet<>()).add(table);
+    }
+
+    private static void unindexOwner(TableRecord table) {
+        if (table.getOwner() == null) return;
+        Set<TableRecord> tables = byOwner.get(table.getOwner());
+        if (tables == null) return;
+        tables.remove(table);
+        if (tables.isEmpty()) byOwner.remove(table.getOwner());
+    }
+}
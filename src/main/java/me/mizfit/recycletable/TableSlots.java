@@ -0,0 +1,98 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+
+/**
+ * A table's 54 slots.
+ *
+ * While nobody has the GUI open they are a plain {@code ItemStack[54]}: session
+ * output, overflow returns and hoppers read and write the array directly, with
+ * none of the stack copying a server inventory does on every get/set. The Bukkit
+ * {@link Inventory} is created the first time a player opens the table; while
+ * it's open it is authoritative, and when the last viewer closes it the contents
+ * are copied back into the array. The Inventory object is kept (empty) so the
+ * table's GUI keeps one identity.
+ *
+ * Stacks handed to {@link #setItem} are stored as they are — pass a fresh or
+ * cloned stack, as every caller does already.
+ */
+public final class TableSlots {
+    public static final int SIZE = 54;
+
+    private final TableRecord table;        // null only for detached slots that are never opened
+    private final ItemStack[] slots = new ItemStack[SIZE];
+    private Inventory inventory = null;
+    private boolean live = false;           // the Inventory holds the contents
+
+    TableSlots(TableRecord table) {
+        this.table = table;
+    }
+
+    public ItemStack getItem(int slot) {
+        return live ? inventory.getItem(slot) : slots[slot];
+    }
+
+    public void setItem(int slot, ItemStack item) {
+        if (live) {
+            inventory.setItem(slot, item);
+        } else {
+            slots[slot] = item == null || item.getType() == Material.AIR ? null : item;
+        }
+    }
+
+    /** True while the GUI inventory is open and holds the contents. */
+    public boolean isLive() { return live; }
+
+    /** Copies of every slot, safe to hand to another thread. */
+    ItemStack[] snapshot() {
+        ItemStack[] copy = new ItemStack[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            ItemStack item = getItem(i);
+            if (item != null && item.getType() != Material.AIR) copy[i] = item.clone();
+        }
+        return copy;
+    }
+
+    /**
+     * The GUI inventory, filled from the array and made authoritative. Call when a
+     * player is about to open the table.
+     */
+    public Inventory open() {
+        if (inventory == null) {
+            inventory = Bukkit.createInventory(new TableHolder(table), SIZE, TableListener.GUI_TITLE);
+            TableRegistry.indexInventory(table, inventory);
+        }
+        if (!live) {
+            inventory.setContents(slots);
+            Arrays.fill(slots, null);
+            live = true;
+        }
+        return inventory;
+    }
+
+    /** The GUI inventory if it has been created, without opening it. */
+    Inventory getInventory() { return inventory; }
+
+    /**
+     * Moves the contents back into the array if nobody but {@code closing} (may be
+     * null) is viewing the GUI. Call when a viewer closes it.
+     */
+    void release(HumanEntity closing) {
+        if (!live) return;
+        for (HumanEntity viewer : inventory.getViewers()) {
+            if (viewer != closing) return;
+        }
+        for (int i = 0; i < SIZE; i++) {
+            ItemStack item = inventory.getItem(i);
+            slots[i] = item == null || item.getType() == Material.AIR ? null : item.clone();
+        }
+        live = false;
+        inventory.clear();
+    }
+}
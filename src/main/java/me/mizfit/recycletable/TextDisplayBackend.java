@@ -0,0 +1,78 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Display;
+import org.bukkit.entity.TextDisplay;
+
+import java.util.function.Consumer;
+
+/**
+ * Hologram drawn by a single multi-line TextDisplay (1.19.4+). Display entities
+ * don't tick like living entities, and a text change is one metadata update
+ * instead of three renames.
+ *
+ * Only loaded when the server has TextDisplay — see {@link #isSupported()}.
+ */
+public class TextDisplayBackend implements HologramBackend {
+
+    // Bottom line sits where the lowest ArmorStand name used to be
+    private static final double Y_OFFSET = 2.2;
+
+    /** True if this server's API has display entities. */
+    public static boolean isSupported() {
+        try {
+            Class.forName("org.bukkit.entity.TextDisplay");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getName() { return "text-display"; }
+
+    @Override
+    public Hologram spawn(Location blockLoc) {
+        World world = blockLoc.getWorld();
+        Location spawnLoc = new Location(world,
+                blockLoc.getBlockX() + 0.5, blockLoc.getBlockY() + Y_OFFSET, blockLoc.getBlockZ() + 0.5);
+
+        // Configure before the entity is added to the world, so clients get it in its
+        // final state with the spawn packet instead of a follow-up metadata update.
+        // Typed as java.util.function.Consumer so the non-deprecated overload is chosen.
+        Consumer<TextDisplay> setup = d -> {
+            d.setBillboard(Display.Billboard.CENTER);
+            d.setAlignment(TextDisplay.TextAlignment.CENTER);
+            d.setDefaultBackground(false);
+            d.setShadowed(true);
+            d.setPersistent(false);
+            d.setText(" ");
+        };
+        TextDisplay display = world.spawn(spawnLoc, TextDisplay.class, setup);
+        return new DisplayHologram(display);
+    }
+
+    private static final class DisplayHologram implements Hologram {
+        private final TextDisplay display;
+        // Last lines sent — an unchanged hologram costs no setText / metadata packet
+        private String top, middle, bottom;
+
+        DisplayHologram(TextDisplay display) { this.display = display; }
+
+        @Override
+        public boolean render(String top, String middle, String bottom) {
+            if (top.equals(this.top) && middle.equals(this.middle) && bottom.equals(this.bottom)) return false;
+            if (!display.isDead()) display.setText(top + "\n" + middle + "\n" + bottom);
+            this.top = top;
+            this.middle = middle;
+            this.bottom = bottom;
+            return true;
+        }
+
+        @Override
+        public void remove() {
+            if (!display.isDead()) display.remove();
+        }
+    }
+}
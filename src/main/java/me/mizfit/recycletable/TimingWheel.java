@@ -0,0 +1,182 @@
+package me.mizfit.recycletable;
+
+/**
+ * Hierarchical timing wheel keyed by absolute tick.
+ *
+ * Four levels of 64 slots each cover 2^24 ticks (~9.7 days at 20 TPS). A timer
+ * is filed in the lowest level whose span still reaches its deadline; each time
+ * a lower level wraps around, the matching slot one level up is cascaded down.
+ * Timers further out than the whole wheel wait in an overflow list that is
+ * re-filed whenever the top level wraps.
+ *
+ * Scheduling and cancelling are O(1); advancing one tick only touches the
+ * timers that are actually due (plus the occasional cascade), so an idle wheel
+ * costs almost nothing regardless of how many timers are pending.
+ *
+ * Not thread-safe — only ever driven from the server thread.
+ */
+public class TimingWheel {
+
+    private static final int  BITS   = 6;
+    private static final int  SLOTS  = 1 << BITS;
+    private static final int  MASK   = SLOTS - 1;
+    private static final int  LEVELS = 4;
+    private static final long SPAN   = 1L << (BITS * LEVELS);
+
+    private static final int OVERFLOW_LEVEL = -1;
+    private static final int FIRING_LEVEL   = -2;
+
+    // Heads of intrusive doubly-linked lists, one per slot
+    private final Timer[][] wheels = new Timer[LEVELS][SLOTS];
+    private Timer overflow = null;
+    // Timers due this tick that haven't run yet; cancel() can still unlink them
+    private Timer firing = null;
+
+    private long currentTick = 0L;
+    private int  size = 0;
+
+    /** A single scheduled callback. Returned by {@link #schedule} so it can be cancelled. */
+    public static final class Timer {
+        private final Runnable task;
+        private final long deadline;
+        private Timer prev, next;
+        private int level, slot;
+        private boolean scheduled;
+
+        private Timer(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** Absolute tick at which this timer fires. */
+        public long getDeadline() { return deadline; }
+        public boolean isScheduled() { return scheduled; }
+    }
+
+    /** The tick most recently processed by {@link #advance()}. */
+    public long currentTick() { return currentTick; }
+
+    /** Number of timers currently waiting to fire. */
+    public int size() { return size; }
+
+    /**
+     * Schedules a task to run after the given number of ticks (minimum 1).
+     * Safe to call from inside a firing task.
+     */
+    public Timer schedule(Runnable task, long delayTicks) {
+        Timer t = new Timer(task, currentTick + Math.max(1L, delayTicks));
+        file(t);
+        size++;
+        return t;
+    }
+
+    /** Cancels a pending timer. No-op if it already fired or was cancelled. */
+    public void cancel(Timer t) {
+        if (t == null || !t.scheduled) return;
+        unlink(t);
+        size--;
+    }
+
+    /**
+     * Advances the wheel by one tick and runs every timer that is now due.
+     * Returns the number of timers that fired.
+     */
+    public int advance() {
+        long now = ++currentTick;
+
+        // Cascade higher levels down whenever the level below wraps
+        if ((now & MASK) == 0) {
+            for (int level = 1; level < LEVELS; level++) {
+                cascade(level, (int) ((now >>> (level * BITS)) & MASK));
+                if (((now >>> (level * BITS)) & MASK) != 0) break;
+                if (level == LEVELS - 1) cascadeOverflow();
+            }
+        }
+
+        // Move the due slot to the firing list first so tasks may schedule new timers
+        // freely, and pop one timer at a time so a task can cancel a later one
+        int idx = (int) (now & MASK);
+        firing = wheels[0][idx];
+        wheels[0][idx] = null;
+        for (Timer t = firing; t != null; t = t.next) t.level = FIRING_LEVEL;
+
+        int fired = 0;
+        while (firing != null) {
+            Timer due = firing;
+            unlink(due);
+            size--;
+            fired++;
+            try {
+                due.task.run();
+            } catch (Throwable t) {
+                RecycleTable.getInstance().getLogger().severe("[TimingWheel] Task failed: " + t);
+                t.printStackTrace();
+            }
+        }
+        return fired;
+    }
+
+    // ── Internals ─────────────────────────────────────────────────────────────
+
+    private void file(Timer t) {
+        long delta = t.deadline - currentTick;
+        if (delta >= SPAN) {
+            link(t, OVERFLOW_LEVEL, 0);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) level++;
+        link(t, level, (int) ((t.deadline >>> (level * BITS)) & MASK));
+    }
+
+    private void cascade(int level, int slot) {
+        Timer t = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (t != null) {
+            Timer next = t.next;
+            t.prev = t.next = null;
+            t.scheduled = false;
+            file(t);
+            t = next;
+        }
+    }
+
+    private void cascadeOverflow() {
+        Timer t = overflow;
+        overflow = null;
+        while (t != null) {
+            Timer next = t.next;
+            t.prev = t.next = null;
+            t.scheduled = false;
+            file(t);
+            t = next;
+        }
+    }
+
+    private void link(Timer t, int level, int slot) {
+        Timer head = level == OVERFLOW_LEVEL ? overflow : wheels[level][slot];
+        t.level = level;
+        t.slot = slot;
+        t.prev = null;
+        t.next = head;
+        if (head != null) head.prev = t;
+        if (level == OVERFLOW_LEVEL) overflow = t;
+        else wheels[level][slot] = t;
+        t.scheduled = true;
+    }
+
+    private void unlink(Timer t) {
+        if (t.prev != null) {
+            t.prev.next = t.next;
+        } else if (t.level == OVERFLOW_LEVEL) {
+            overflow = t.next;
+        } else if (t.level == FIRING_LEVEL) {
+            firing = t.next;
+        } else {
+            wheels[t.level][t.slot] = t.next;
+        }
+        if (t.next != null) t.next.prev = t.prev;
+        t.prev = t.next = null;
+        t.scheduled = false;
+    }
+}
@@ -0,0 +1,100 @@
+package me.mizfit.recycletable;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that a completion's hot path allocates nothing once warmed up: tallying
+ * a damageable stack's decomposition (durability included) and topping up partial
+ * output stacks through an {@link OutputPlacer}. Uses the JVM's per-thread
+ * allocation counter, so it runs without a server and is skipped on JVMs that
+ * don't report it.
+ */
+class CompletionAllocationTest {
+    private static final int WARMUP = 20_000;
+    private static final int RUNS = 10_000;
+
+    private RecipeManager.DecompositionMatrix previous;
+
+    @BeforeEach
+    void installMatrix() {
+        previous = RecipeManager.getDecomposition();
+        // IRON_PICKAXE → 3 IRON_INGOT + 2 STICK; every other row empty
+        int[] rowStart = new int[Material.values().length + 1];
+        for (int i = Material.IRON_PICKAXE.ordinal() + 1; i < rowStart.length; i++) rowStart[i] = 2;
+        RecipeManager.setDecomposition(new RecipeManager.DecompositionMatrix(rowStart,
+                new int[] { Material.IRON_INGOT.ordinal(), Material.STICK.ordinal() },
+                new double[] { 3.0, 2.0 }));
+    }
+
+    @AfterEach
+    void restoreMatrix() {
+        RecipeManager.setDecomposition(previous);
+    }
+
+    @Test
+    void completionPathDoesNotAllocate() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean, "no per-thread allocation counter");
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(bean.isThreadAllocatedMemorySupported(), "no per-thread allocation counter");
+        bean.setThreadAllocatedMemoryEnabled(true);
+        long tid = Thread.currentThread().getId();
+
+        ItemStack pickaxe = new ApiFreeStack(Material.IRON_PICKAXE);
+        OutputDelta delta = new OutputDelta();
+        TableSlots slots = new TableSlots(null);
+        // Partial stacks to top up, so placing never needs a new stack
+        ItemStack ingots = new ApiFreeStack(Material.IRON_INGOT);
+        ItemStack sticks = new ApiFreeStack(Material.STICK);
+        slots.setItem(5, ingots);
+        slots.setItem(6, sticks);
+        OutputPlacer placer = new OutputPlacer(slots);
+
+        for (int i = 0; i < WARMUP; i++) complete(pickaxe, delta, placer, ingots, sticks);
+
+        // What a pair of counter reads allocates by itself
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long before = bean.getThreadAllocatedBytes(tid);
+            overhead = Math.min(overhead, bean.getThreadAllocatedBytes(tid) - before);
+        }
+
+        long before = bean.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < RUNS; i++) complete(pickaxe, delta, placer, ingots, sticks);
+        long allocated = Math.max(0L, bean.getThreadAllocatedBytes(tid) - before - overhead);
+
+        assertEquals(0L, allocated, "bytes allocated over " + RUNS + " completions");
+    }
+
+    // One completion's output work, as RecycleSession.placeOutputs does it for a stack without books
+    private static void complete(ItemStack item, OutputDelta delta, OutputPlacer placer,
+                                 ItemStack ingots, ItemStack sticks) {
+        RecycleSession.decomposeInto(item, delta);
+        assertEquals(0, placer.placeMaterial(Material.IRON_INGOT, 3));
+        assertEquals(0, placer.placeMaterial(Material.STICK, 2));
+        // Take the output back out, as a player or hopper would; the stacks stay partial
+        ingots.setAmount(1);
+        sticks.setAmount(1);
+    }
+
+    /**
+     * An undamaged stack that doesn't reach for the server's item factory, which
+     * the plain API ItemStack does for anything meta-related.
+     */
+    private static final class ApiFreeStack extends ItemStack {
+        ApiFreeStack(Material type) { super(type); }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public short getDurability() { return 0; }
+    }
+}